@@ -0,0 +1,198 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Background snapshot writer for EnergyTracker (group commit).
+// Mutations only mark the state dirty; a writer thread coalesces them and
+// saves one snapshot per `batchSize` changes or per `interval`, whichever
+// comes first, through the store's temp-file-and-rename save. Callers that
+// need durability get a future that completes once a snapshot containing
+// their change is on disk. At most `capacity` unsaved changes are allowed;
+// beyond that, writers wait for the next save.
+public class AsyncPersister implements Closeable {
+    private final EnergyStore store;
+    private final Object lock;                           // guards the tracker's entries
+    private final Supplier<Collection<EnergyEntry>> snapshot; // called holding `lock`
+    private final long intervalNanos;
+    private final int batchSize;
+    private final int capacity;
+    private final Thread writer;
+
+    // guarded by `this`
+    private long changes;      // sequence number of the latest change
+    private long snapshotted;  // latest change contained in a snapshot being or already written
+    private long persisted;    // latest change known to be on disk
+    private long firstDirtyAt; // when the oldest unsnapshotted change was made
+    private boolean flushRequested;
+    private boolean closed;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    private static final class Waiter {
+        final long change;
+        final CompletableFuture<Void> done;
+
+        Waiter(long change, CompletableFuture<Void> done) {
+            this.change = change;
+            this.done = done;
+        }
+    }
+
+    // `snapshot` must copy the entries; it runs holding `lock`, which mutators must also hold
+    // while changing the entries and calling markDirty().
+    public AsyncPersister(EnergyStore store, Object lock, Supplier<Collection<EnergyEntry>> snapshot,
+                          long intervalMillis, int batchSize, int capacity) {
+        this.store = store;
+        this.lock = lock;
+        this.snapshot = snapshot;
+        this.intervalNanos = Math.max(1, intervalMillis) * 1_000_000L;
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(this.batchSize, capacity);
+        this.writer = new Thread(this::run, "energy-persister-" + store.getPath().getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Block while `capacity` changes are waiting to be saved. Call before taking `lock`.
+    public synchronized void awaitCapacity() {
+        boolean interrupted = false;
+        while (!closed && changes - snapshotted >= capacity) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Record one change; call holding `lock`, right after making it. Returns its sequence number.
+    public synchronized long markDirty() {
+        if (closed) throw new IllegalStateException("persister is closed");
+        if (changes == snapshotted) firstDirtyAt = System.nanoTime();
+        changes++;
+        if (changes - snapshotted >= batchSize) notifyAll();
+        return changes;
+    }
+
+    // Completes when a snapshot containing change `seq` has been saved, or exceptionally if that save fails.
+    public synchronized CompletableFuture<Void> whenPersisted(long seq) {
+        if (seq <= persisted) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        waiters.add(new Waiter(seq, f));
+        return f;
+    }
+
+    // Save now rather than at the next interval; the future covers every change made so far.
+    public synchronized CompletableFuture<Void> flush() {
+        CompletableFuture<Void> f = whenPersisted(changes);
+        if (!f.isDone()) {
+            flushRequested = true;
+            notifyAll();
+        }
+        return f;
+    }
+
+    // Write out whatever is pending and stop the writer thread.
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                while (!saveDue()) {
+                    if (closed && changes == snapshotted) return;
+                    try {
+                        if (changes == snapshotted) {
+                            wait();
+                        } else {
+                            long left = intervalNanos - (System.nanoTime() - firstDirtyAt);
+                            if (left > 0) wait(left / 1_000_000L, (int) (left % 1_000_000L));
+                        }
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                flushRequested = false;
+            }
+            Collection<EnergyEntry> entries;
+            long upTo;
+            synchronized (lock) {
+                entries = snapshot.get();
+                synchronized (this) {
+                    upTo = changes;
+                    snapshotted = upTo;
+                    notifyAll(); // capacity freed
+                }
+            }
+            IOException failure = null;
+            long t0 = System.nanoTime();
+            try {
+                store.save(entries);
+                EnergyMetrics.SAVE.record(System.nanoTime() - t0);
+                EnergyMetrics.BYTES_PERSISTED.add(Files.size(store.getPath()));
+            } catch (IOException e) {
+                failure = e;
+                EnergyMetrics.IO_ERRORS.increment();
+                System.out.println("Could not save data: " + e.getMessage());
+            }
+            finish(upTo, failure);
+            if (failure != null) backOff();
+        }
+    }
+
+    // after a failed save, wait one interval before retrying (close() cuts it short)
+    private synchronized void backOff() {
+        long end = System.nanoTime() + intervalNanos;
+        long left;
+        while (!closed && (left = end - System.nanoTime()) > 0) {
+            try {
+                wait(left / 1_000_000L, (int) (left % 1_000_000L));
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+        }
+    }
+
+    private boolean saveDue() {
+        long dirty = changes - snapshotted;
+        if (dirty == 0) return false;
+        return closed || flushRequested || dirty >= batchSize
+                || System.nanoTime() - firstDirtyAt >= intervalNanos;
+    }
+
+    private synchronized void finish(long upTo, IOException failure) {
+        if (failure == null) {
+            persisted = upTo;
+        } else if (!closed) {
+            // the next save retries these changes too (when closing they are given up)
+            snapshotted = persisted;
+            firstDirtyAt = System.nanoTime();
+        }
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            Waiter w = it.next();
+            if (w.change > upTo) continue;
+            if (failure == null) w.done.complete(null);
+            else w.done.completeExceptionally(failure);
+            it.remove();
+        }
+    }
+
+    public synchronized long pendingChanges() {
+        return changes - persisted;
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Compact binary snapshot: a fixed header, a string dictionary for
+// workType/peakTime, then one 18-byte record per day.
+//
+//   header  magic "ENRG" | version u16 | reserved u16 | record count i32
+//           | dictionary bytes i32 | CRC32 of dictionary + records i32
+//   dict    workType names, then peakTime names, each list as u16 count
+//           followed by (u16 length + UTF-8 bytes) per name
+//   record  epochDay i32 | sleep, mood, productivity, caffeine i16
+//           | workType code u8 | peakTime code u8 | score in hundredths i32
+//
+// workType is free text; a history with more than 256 distinct values of either
+// column is written as version 2 instead, the same layout with i32 dictionary
+// counts and i32 codes (24-byte records). Both versions are read.
+//
+// Scores are kept to two decimals, exactly what the CSV keeps, so CSV <-> binary is lossless.
+public class BinaryEnergyStore implements EnergyStore {
+    public static final String EXTENSION = ".bin";
+
+    private static final byte[] MAGIC = {'E', 'N', 'R', 'G'};
+    private static final short VERSION = 1;
+    private static final short WIDE_VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+    private static final int RECORD_BYTES = 18;
+    private static final int WIDE_RECORD_BYTES = 24;
+    private static final int MAX_NARROW_CODES = 256;
+    private static final int NAN_SCORE = Integer.MIN_VALUE;
+
+    private final Path path;
+
+    public BinaryEnergyStore(String filename) {
+        this.path = Paths.get(filename);
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    @Override
+    public void load(Consumer<EnergyEntry> sink, EnergyCsvParser.ErrorHandler errors) throws IOException {
+        if (!exists()) return;
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buf.remaining() < HEADER_BYTES) throw corrupt("truncated header");
+        byte[] magic = new byte[4];
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw corrupt("bad magic");
+        short version = buf.getShort();
+        if (version != VERSION && version != WIDE_VERSION) throw corrupt("unsupported version " + version);
+        boolean wide = version == WIDE_VERSION;
+        buf.getShort(); // reserved
+        int count = buf.getInt();
+        int dictBytes = buf.getInt();
+        int crc = buf.getInt();
+        if (count < 0 || dictBytes < 0
+                || buf.remaining() != dictBytes + (long) count * (wide ? WIDE_RECORD_BYTES : RECORD_BYTES)) {
+            throw corrupt("size does not match header");
+        }
+
+        CRC32 check = new CRC32();
+        check.update(buf.duplicate());
+        if ((int) check.getValue() != crc) throw corrupt("checksum mismatch");
+
+        String[] workTypes = readStrings(buf, wide);
+        String[] peakTimes = readStrings(buf, wide);
+        for (int i = 0; i < count; i++) {
+            int day = buf.getInt();
+            int sleep = buf.getShort();
+            int mood = buf.getShort();
+            int productivity = buf.getShort();
+            int caffeine = buf.getShort();
+            int wt = wide ? buf.getInt() : buf.get() & 0xFF;
+            int pt = wide ? buf.getInt() : buf.get() & 0xFF;
+            int centi = buf.getInt();
+            if (wt < 0 || pt < 0 || wt >= workTypes.length || pt >= peakTimes.length) throw corrupt("bad dictionary code");
+            double score = centi == NAN_SCORE ? Double.NaN : centi / 100.0;
+            sink.accept(EnergyEntry.of(LocalDate.ofEpochDay(day), sleep, mood, productivity, caffeine,
+                    workTypes[wt], peakTimes[pt], score));
+        }
+    }
+
+    @Override
+    public void save(Collection<EnergyEntry> entries) throws IOException {
+        Map<String, Integer> workTypes = new LinkedHashMap<>();
+        Map<String, Integer> peakTimes = new LinkedHashMap<>();
+        for (EnergyEntry e : entries) {
+            code(workTypes, e.getWorkType());
+            code(peakTimes, e.getPeakTime());
+        }
+        boolean wide = workTypes.size() > MAX_NARROW_CODES || peakTimes.size() > MAX_NARROW_CODES;
+        byte[] dict = writeDictionary(workTypes.keySet(), peakTimes.keySet(), wide);
+
+        ByteBuffer body = ByteBuffer.allocate(dict.length + entries.size() * (wide ? WIDE_RECORD_BYTES : RECORD_BYTES));
+        body.put(dict);
+        for (EnergyEntry e : entries) {
+            body.putInt(Math.toIntExact(e.getDate().toEpochDay()));
+            body.putShort(small(e.getSleepHours()));
+            body.putShort(small(e.getMood()));
+            body.putShort(small(e.getProductivity()));
+            body.putShort(small(e.getCaffeine()));
+            if (wide) {
+                body.putInt(workTypes.get(e.getWorkType()));
+                body.putInt(peakTimes.get(e.getPeakTime()));
+            } else {
+                body.put((byte) (int) workTypes.get(e.getWorkType()));
+                body.put((byte) (int) peakTimes.get(e.getPeakTime()));
+            }
+            body.putInt(centi(e.getEnergyScore()));
+        }
+        body.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.put(MAGIC).putShort(wide ? WIDE_VERSION : VERSION).putShort((short) 0)
+                .putInt(entries.size()).putInt(dict.length).putInt((int) crc.getValue());
+        header.flip();
+
+        // write beside the target and swap in, so a crash never leaves half a snapshot
+        Path tmp = EnergyStore.tempFile(path);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) ch.write(header);
+            while (body.hasRemaining()) ch.write(body);
+            long t0 = System.nanoTime();
+            ch.force(true);
+            EnergyMetrics.FSYNC.record(System.nanoTime() - t0);
+        }
+        EnergyStore.replace(tmp, path);
+    }
+
+    private static void code(Map<String, Integer> dict, String s) {
+        if (!dict.containsKey(s)) dict.put(s, dict.size());
+    }
+
+    private static byte[] writeDictionary(Collection<String> workTypes, Collection<String> peakTimes, boolean wide)
+            throws IOException {
+        List<byte[]> parts = new ArrayList<>();
+        int size = 0;
+        for (Collection<String> names : Arrays.asList(workTypes, peakTimes)) {
+            size += wide ? 4 : 2;
+            for (String s : names) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                if (b.length > 0xFFFF) throw new IOException("dictionary value too long");
+                parts.add(b);
+                size += 2 + b.length;
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        Iterator<byte[]> it = parts.iterator();
+        for (Collection<String> names : Arrays.asList(workTypes, peakTimes)) {
+            if (wide) out.putInt(names.size());
+            else out.putShort((short) names.size());
+            for (int i = 0; i < names.size(); i++) {
+                byte[] b = it.next();
+                out.putShort((short) b.length);
+                out.put(b);
+            }
+        }
+        return out.array();
+    }
+
+    private static String[] readStrings(ByteBuffer buf, boolean wide) throws IOException {
+        try {
+            int n = wide ? buf.getInt() : buf.getShort() & 0xFFFF;
+            if (n < 0 || n > buf.remaining() / 2) throw corrupt("bad dictionary size");
+            String[] names = new String[n];
+            for (int i = 0; i < names.length; i++) {
+                byte[] b = new byte[buf.getShort() & 0xFFFF];
+                buf.get(b);
+                names[i] = new String(b, StandardCharsets.UTF_8);
+            }
+            return names;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw corrupt("truncated dictionary");
+        }
+    }
+
+    private static short small(int v) throws IOException {
+        if (v < Short.MIN_VALUE || v > Short.MAX_VALUE) {
+            throw new IOException("value " + v + " does not fit the binary snapshot");
+        }
+        return (short) v;
+    }
+
+    private static int centi(double score) throws IOException {
+        if (Double.isNaN(score)) return NAN_SCORE;
+        long v = Math.round(score * 100);
+        if (v <= NAN_SCORE || v > Integer.MAX_VALUE) {
+            throw new IOException("score " + score + " does not fit the binary snapshot");
+        }
+        return (int) v;
+    }
+
+    private static IOException corrupt(String why) {
+        return new IOException("corrupt binary snapshot: " + why);
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Loads a large energy CSV on the fork-join pool: the file is split at
+// newline boundaries, each chunk is memory-mapped and parsed into a sorted
+// run, and the runs are merged pairwise. Duplicate dates keep the row that
+// comes last in the file, the same rule addEntry applies.
+public class BulkLoader {
+    // below this a single-threaded parse is faster than forking
+    public static final long PARALLEL_THRESHOLD = 8L << 20;
+    private static final long MIN_CHUNK = 1L << 20;
+    private static final long MAX_CHUNK = 64L << 20; // keeps each chunk's byte[] small
+    private static final int BOUNDARY_PROBE = 4096;
+
+    private static final Comparator<EnergyEntry> BY_DATE = Comparator.comparing(EnergyEntry::getDate);
+
+    // Parse `file` and return its entries sorted by date, one per day.
+    // Malformed rows are reported afterwards in file order with their real line numbers.
+    public static List<EnergyEntry> load(Path file, EnergyCsvParser.ErrorHandler errors) throws IOException {
+        return load(file, ForkJoinPool.commonPool(), errors);
+    }
+
+    public static List<EnergyEntry> load(Path file, ForkJoinPool pool, EnergyCsvParser.ErrorHandler errors)
+            throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = split(ch, pool.getParallelism());
+            Chunk[] chunks = new Chunk[bounds.length - 1];
+            for (int i = 0; i < chunks.length; i++) chunks[i] = new Chunk(ch, bounds[i], bounds[i + 1]);
+            List<EnergyEntry> merged;
+            try {
+                merged = pool.invoke(new MergeTask(chunks, 0, chunks.length));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            if (errors != null) {
+                long firstLine = 1;
+                for (Chunk c : chunks) {
+                    for (int i = 0; i < c.errorLines.size(); i++) {
+                        errors.malformed(firstLine + c.errorLines.get(i) - 1, c.errorReasons.get(i));
+                    }
+                    firstLine += c.lines;
+                }
+            }
+            return merged;
+        }
+    }
+
+    // Chunk start offsets plus the file size; every boundary sits just after a '\n'.
+    private static long[] split(FileChannel ch, int parallelism) throws IOException {
+        long size = ch.size();
+        long target = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (parallelism * 4L)));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE);
+        long pos = target;
+        while (pos < size) {
+            long cut = nextLineStart(ch, pos, probe);
+            if (cut >= size) break;
+            bounds.add(cut);
+            pos = cut + target;
+        }
+        bounds.add(size);
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) out[i] = bounds.get(i);
+        return out;
+    }
+
+    private static long nextLineStart(FileChannel ch, long pos, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int n = ch.read(probe, pos);
+            if (n <= 0) return ch.size();
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+    }
+
+    private static class Chunk {
+        final FileChannel channel;
+        final long start;
+        final long end;
+        long lines;
+        final List<Long> errorLines = new ArrayList<>();
+        final List<String> errorReasons = new ArrayList<>();
+
+        Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        // rows of this chunk sorted by date, one per day (the later row wins)
+        List<EnergyEntry> parse() throws IOException {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            byte[] data = new byte[(int) (end - start)];
+            mapped.get(data);
+            List<EnergyEntry> rows = new ArrayList<>();
+            EnergyCsvParser parser = new EnergyCsvParser();
+            parser.parse(data, 0, data.length, 1,
+                    (line, day, s, m, p, c, wt, pt, score) ->
+                            rows.add(EnergyEntry.of(LocalDate.ofEpochDay(day), s, m, p, c, wt, pt, score)),
+                    (line, reason) -> {
+                        errorLines.add(line);
+                        errorReasons.add(reason);
+                    });
+            lines = parser.nextLine() - 1;
+            rows.sort(BY_DATE); // stable, and nearly free on date-ordered files
+            return dedupe(rows);
+        }
+    }
+
+    // keep the last of each run of equal dates
+    private static List<EnergyEntry> dedupe(List<EnergyEntry> sorted) {
+        List<EnergyEntry> out = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i + 1 < sorted.size() && sorted.get(i + 1).getDate().equals(sorted.get(i).getDate())) continue;
+            out.add(sorted.get(i));
+        }
+        return out;
+    }
+
+    // Merge two date-sorted runs; on equal dates the right (later in file) run wins.
+    static List<EnergyEntry> merge(List<EnergyEntry> left, List<EnergyEntry> right) {
+        List<EnergyEntry> out = new ArrayList<>(left.size() + right.size());
+        int i = 0, j = 0;
+        while (i < left.size() && j < right.size()) {
+            int cmp = left.get(i).getDate().compareTo(right.get(j).getDate());
+            if (cmp < 0) out.add(left.get(i++));
+            else if (cmp > 0) out.add(right.get(j++));
+            else {
+                out.add(right.get(j++));
+                i++;
+            }
+        }
+        while (i < left.size()) out.add(left.get(i++));
+        while (j < right.size()) out.add(right.get(j++));
+        return out;
+    }
+
+    private static class MergeTask extends RecursiveTask<List<EnergyEntry>> {
+        private static final long serialVersionUID = 1L;
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+        MergeTask(Chunk[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<EnergyEntry> compute() {
+            if (to - from == 1) {
+                try {
+                    return chunks[from].parse();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            MergeTask left = new MergeTask(chunks, from, mid);
+            left.fork();
+            List<EnergyEntry> right = new MergeTask(chunks, mid, to).compute();
+            return merge(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+// Where CrashMonitor delivers crash alerts: called once per user per crash,
+// from the monitor's thread, so implementations should hand slow work off.
+public interface CrashAlertSink {
+    // prints one line per alert
+    CrashAlertSink LOG = (userId, state) -> System.out.println("Crash alert for " + userId + ": " + state);
+
+    void alert(String userId, CrashDetector.State state);
+}
@@ -0,0 +1,297 @@
+import java.time.LocalDate;
+import java.util.List;
+
+// Streaming crash detector over daily energy scores, O(1) per day with a fixed
+// size state. It keeps an exponentially weighted baseline (mean and variance)
+// and a fast EWMA over the last few days, and standardizes each day against the
+// baseline as it was before that day:
+//   - z: the fast EWMA this many baseline standard deviations off the baseline;
+//     a sharp drop over the last days pushes it below -zThreshold
+//   - CUSUM: one-sided sum of the days' shortfalls beyond `cusumSlack` standard
+//     deviations; a long run of slightly low days pushes it above cusumThreshold
+// The user is crashing while either fires (after `warmup` days). EnergyTracker
+// keeps one per history (isCrashing); CrashMonitor sweeps them across users and
+// CrashReplay runs it over CSV files to tune the thresholds.
+public class CrashDetector {
+    private static final double MIN_VARIANCE = 1.0; // in score points^2, so a flat history cannot divide by ~0
+
+    public static final class Config {
+        // -Denergy.crash=recent=2,alpha=0.05,z=1.0,k=0.5,h=4,warmup=7 overrides any of these
+        public static final Config DEFAULT = fromProperty();
+
+        public final int recentDays;         // span of the fast EWMA (alpha = 2 / (recentDays + 1))
+        public final double baselineAlpha;   // weight of the newest day in the baseline
+        public final double zThreshold;
+        public final double cusumSlack;
+        public final double cusumThreshold;
+        public final int warmup;             // days before anything is flagged
+
+        public Config(int recentDays, double baselineAlpha, double zThreshold, double cusumSlack,
+                      double cusumThreshold, int warmup) {
+            if (recentDays < 1 || !(baselineAlpha > 0 && baselineAlpha < 1) || !(zThreshold > 0)
+                    || !(cusumSlack >= 0) || !(cusumThreshold > 0) || warmup < 1) {
+                throw new IllegalArgumentException("invalid crash detector settings");
+            }
+            this.recentDays = recentDays;
+            this.baselineAlpha = baselineAlpha;
+            this.zThreshold = zThreshold;
+            this.cusumSlack = cusumSlack;
+            this.cusumThreshold = cusumThreshold;
+            this.warmup = warmup;
+        }
+
+        public Config withRecentDays(int days) {
+            return new Config(days, baselineAlpha, zThreshold, cusumSlack, cusumThreshold, warmup);
+        }
+
+        // "z=1.5,h=5" on top of these settings; keys recent, alpha, z, k, h, warmup
+        public Config with(String spec) {
+            int recent = recentDays, warm = warmup;
+            double alpha = baselineAlpha, z = zThreshold, k = cusumSlack, h = cusumThreshold;
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("expected key=value: " + part);
+                String v = kv[1].trim();
+                switch (kv[0].trim()) {
+                    case "recent": recent = Integer.parseInt(v); break;
+                    case "alpha": alpha = Double.parseDouble(v); break;
+                    case "z": z = Double.parseDouble(v); break;
+                    case "k": k = Double.parseDouble(v); break;
+                    case "h": h = Double.parseDouble(v); break;
+                    case "warmup": warm = Integer.parseInt(v); break;
+                    default: throw new IllegalArgumentException("unknown crash setting: " + kv[0]);
+                }
+            }
+            return new Config(recent, alpha, z, k, h, warm);
+        }
+
+        private static Config fromProperty() {
+            Config c = new Config(2, 0.05, 1.0, 0.5, 4.0, 7);
+            String spec = System.getProperty("energy.crash");
+            if (spec == null || spec.isBlank()) return c;
+            try {
+                return c.with(spec);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Ignoring energy.crash (" + e.getMessage() + "), using " + c);
+                return c;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "recent=" + recentDays + ",alpha=" + baselineAlpha + ",z=" + zThreshold + ",k=" + cusumSlack
+                    + ",h=" + cusumThreshold + ",warmup=" + warmup;
+        }
+    }
+
+    // What the detector says after the newest day.
+    public static final class State {
+        private final LocalDate date;
+        private final double score, baseline, recent, z, cusum;
+        private final boolean crashing;
+        private final LocalDate since;
+
+        State(LocalDate date, double score, double baseline, double recent, double z, double cusum,
+              boolean crashing, LocalDate since) {
+            this.date = date;
+            this.score = score;
+            this.baseline = baseline;
+            this.recent = recent;
+            this.z = z;
+            this.cusum = cusum;
+            this.crashing = crashing;
+            this.since = since;
+        }
+
+        public LocalDate date() { return date; }        // newest day seen (null for bare scores)
+        public double score() { return score; }
+        public double baseline() { return baseline; }   // baseline mean, that day included
+        public double recent() { return recent; }       // fast EWMA including it
+        public double z() { return z; }
+        public double cusum() { return cusum; }
+        public boolean crashing() { return crashing; }
+        public LocalDate since() { return since; }      // first day of the current crash (null when not crashing or dateless)
+
+        @Override
+        public String toString() {
+            return String.format("%s score=%.1f recent=%.1f baseline=%.1f z=%.2f cusum=%.2f%s", date, score, recent,
+                    baseline, z, cusum, crashing ? " CRASH since " + since : "");
+        }
+    }
+
+    private final Config config;
+    private final double fastAlpha;
+    // days older than this weigh below 1e-9 in the baseline, so rebuild() replays only them
+    private final int horizon;
+
+    private long days;
+    private double score, mean, variance, fast, z, cusum;
+    private boolean crashing;
+    private LocalDate since;
+    private EnergyEntry latest;
+
+    // before the newest day, so it can be replaced in O(1)
+    private long savedDays;
+    private double savedScore, savedMean, savedVariance, savedFast, savedZ, savedCusum;
+    private boolean savedCrashing;
+    private LocalDate savedSince;
+    private EnergyEntry savedLatest;
+
+    public CrashDetector() {
+        this(Config.DEFAULT);
+    }
+
+    public CrashDetector(Config config) {
+        this.config = config;
+        this.fastAlpha = 2.0 / (config.recentDays + 1);
+        this.horizon = (int) Math.ceil(Math.log(1e-9) / Math.log(1 - config.baselineAlpha));
+        reset();
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    // rebuild() replays at most this many newest days
+    int horizon() {
+        return horizon;
+    }
+
+    public void reset() {
+        days = 0;
+        score = mean = variance = fast = z = cusum = 0;
+        crashing = false;
+        since = null;
+        latest = null;
+        save();
+    }
+
+    // Replay the newest days of the index (the ones that still carry weight).
+    public void rebuild(EnergyIndex index) {
+        reset();
+        for (EnergyEntry e : index.lastN(Math.min(index.size(), horizon))) append(e);
+    }
+
+    // `e` is the day after latest()
+    public void append(EnergyEntry e) {
+        save();
+        push(e.getEnergyScore(), e.getDate());
+        latest = e;
+    }
+
+    // `e` replaces latest() (same date, edited)
+    public void replaceLatest(EnergyEntry e) {
+        restore();
+        append(e);
+    }
+
+    // a score without an entry (StatisticsUtil series)
+    public void update(double score) {
+        save();
+        push(score, null);
+        latest = null;
+    }
+
+    private void push(double score, LocalDate date) {
+        this.score = score;
+        days++;
+        if (days == 1) {
+            mean = fast = score;
+            return;
+        }
+        double sd = Math.sqrt(Math.max(variance, MIN_VARIANCE));
+        cusum = Math.max(0, cusum + (mean - score) / sd - config.cusumSlack);
+        fast = fastAlpha * score + (1 - fastAlpha) * fast;
+        z = (fast - mean) / sd;
+        double d = score - mean;
+        mean += config.baselineAlpha * d;
+        variance = (1 - config.baselineAlpha) * (variance + config.baselineAlpha * d * d);
+
+        boolean now = days > config.warmup && (z <= -config.zThreshold || cusum >= config.cusumThreshold);
+        if (now && !crashing) since = date;
+        if (!now) since = null;
+        crashing = now;
+    }
+
+    private void save() {
+        savedDays = days;
+        savedScore = score;
+        savedMean = mean;
+        savedVariance = variance;
+        savedFast = fast;
+        savedZ = z;
+        savedCusum = cusum;
+        savedCrashing = crashing;
+        savedSince = since;
+        savedLatest = latest;
+    }
+
+    private void restore() {
+        days = savedDays;
+        score = savedScore;
+        mean = savedMean;
+        variance = savedVariance;
+        fast = savedFast;
+        z = savedZ;
+        cusum = savedCusum;
+        crashing = savedCrashing;
+        since = savedSince;
+        latest = savedLatest;
+    }
+
+    // a detector in the same state, for simulating days ahead without touching this one
+    CrashDetector copy() {
+        CrashDetector d = new CrashDetector(config);
+        d.copyFrom(this);
+        return d;
+    }
+
+    // take over `other`'s state (same config)
+    void copyFrom(CrashDetector other) {
+        days = other.days;
+        score = other.score;
+        mean = other.mean;
+        variance = other.variance;
+        fast = other.fast;
+        z = other.z;
+        cusum = other.cusum;
+        crashing = other.crashing;
+        since = other.since;
+        latest = other.latest;
+        savedDays = other.savedDays;
+        savedScore = other.savedScore;
+        savedMean = other.savedMean;
+        savedVariance = other.savedVariance;
+        savedFast = other.savedFast;
+        savedZ = other.savedZ;
+        savedCusum = other.savedCusum;
+        savedCrashing = other.savedCrashing;
+        savedSince = other.savedSince;
+        savedLatest = other.savedLatest;
+    }
+
+    public boolean isCrashing() {
+        return crashing;
+    }
+
+    public EnergyEntry latest() {
+        return latest;
+    }
+
+    public long days() {
+        return days;
+    }
+
+    // null before the first day
+    public State state() {
+        if (days == 0) return null;
+        return new State(latest == null ? null : latest.getDate(), score, mean, fast, z, cusum, crashing, since);
+    }
+
+    // the detector after all of `scores`, oldest first
+    public static CrashDetector replay(List<? extends Number> scores) {
+        CrashDetector d = new CrashDetector();
+        for (Number s : scores) d.update(s.doubleValue());
+        return d;
+    }
+}
@@ -0,0 +1,63 @@
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background crash sweep over a TrackerRegistry. Every loaded shard already
+// keeps its CrashDetector current as entries arrive, so a sweep only reads one
+// state per user under that user's read lock (shards that are not loaded are
+// skipped, not loaded) and pushes each new crash to the sink once; the same
+// crash is not reported again until the user recovers.
+public class CrashMonitor implements Closeable {
+    private final TrackerRegistry registry;
+    private final CrashAlertSink sink;
+    private final Map<String, LocalDate> reported = new ConcurrentHashMap<>(); // user -> first day of the crash pushed
+    private ScheduledExecutorService timer;
+
+    public CrashMonitor(TrackerRegistry registry, CrashAlertSink sink) {
+        this.registry = registry;
+        this.sink = sink;
+    }
+
+    // Sweep every `intervalMillis` on a daemon thread until close().
+    public synchronized void start(long intervalMillis) {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "energy-crash-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // One pass over the loaded shards; returns how many were checked.
+    public int sweep() {
+        long t0 = System.nanoTime();
+        int checked = 0;
+        for (String user : registry.loadedUsers()) {
+            CrashDetector.State s = registry.readIfLoaded(user, EnergyTracker::crashState);
+            if (s == null) continue;
+            checked++;
+            if (!s.crashing()) {
+                reported.remove(user);
+            } else if (s.since() != null && !s.since().equals(reported.put(user, s.since()))) {
+                try {
+                    sink.alert(user, s);
+                } catch (RuntimeException e) {
+                    System.out.println("Crash alert sink failed: " + e.getMessage());
+                }
+            }
+        }
+        EnergyMetrics.CRASH_SWEEP.record(System.nanoTime() - t0);
+        return checked;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) timer.shutdownNow();
+        timer = null;
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.*;
+
+// Replays CSV (or *.bin) histories through CrashDetector to tune its thresholds:
+// for every configuration given, how many crashes each file would have raised,
+// when they started and how many days were flagged, next to the old rule
+// (last 2 days' average below 0.9 x the overall average) for comparison.
+//
+// Usage: java CrashReplay [--config z=1.5,h=5 ...] [file ...]   default: energy_data.csv
+//        (keys recent, alpha, z, k, h, warmup; unset keys keep the defaults)
+public class CrashReplay {
+    private static final int MAX_LISTED = 10; // crash starts printed per file
+
+    public static void main(String[] args) {
+        List<CrashDetector.Config> configs = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--config") && i + 1 < args.length) configs.add(CrashDetector.Config.DEFAULT.with(args[++i]));
+            else files.add(args[i]);
+        }
+        if (configs.isEmpty()) configs.add(CrashDetector.Config.DEFAULT);
+        if (files.isEmpty()) files.add("energy_data.csv");
+
+        Map<String, List<EnergyEntry>> histories = new LinkedHashMap<>();
+        for (String f : files) {
+            EnergyIndex index = new EnergyIndex();
+            try {
+                EnergyStore.forFile(f).load(index::upsert, (line, reason) -> { });
+            } catch (Exception e) {
+                System.out.println("Could not read " + f + ": " + e.getMessage());
+                continue;
+            }
+            histories.put(f, new ArrayList<>(index.values()));
+        }
+
+        for (CrashDetector.Config config : configs) {
+            System.out.println("config " + config);
+            long days = 0, flagged = 0, crashes = 0;
+            long start = System.nanoTime();
+            for (Map.Entry<String, List<EnergyEntry>> h : histories.entrySet()) {
+                CrashDetector d = new CrashDetector(config);
+                List<CrashDetector.State> starts = new ArrayList<>();
+                long fileFlagged = 0;
+                for (EnergyEntry e : h.getValue()) {
+                    boolean before = d.isCrashing();
+                    d.append(e);
+                    if (d.isCrashing()) {
+                        fileFlagged++;
+                        if (!before) starts.add(d.state());
+                    }
+                }
+                System.out.printf("  %s: %d days, %d crashes, %.1f%% of days flagged%n", h.getKey(),
+                        h.getValue().size(), starts.size(), percent(fileFlagged, h.getValue().size()));
+                for (int i = 0; i < Math.min(MAX_LISTED, starts.size()); i++) System.out.println("    " + starts.get(i));
+                if (starts.size() > MAX_LISTED) System.out.println("    ... " + (starts.size() - MAX_LISTED) + " more");
+                days += h.getValue().size();
+                flagged += fileFlagged;
+                crashes += starts.size();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("  total: %d crashes, %.1f%% of %d days flagged (%.0f days/s)%n", crashes,
+                    percent(flagged, days), days, seconds == 0 ? 0 : days / seconds);
+        }
+
+        // the rule isCrashing used before, evaluated after every day
+        long days = 0, flagged = 0, crashes = 0;
+        for (List<EnergyEntry> h : histories.values()) {
+            double sum = 0;
+            boolean was = false;
+            for (int i = 0; i < h.size(); i++) {
+                sum += h.get(i).getEnergyScore();
+                boolean now = i >= 1
+                        && (h.get(i).getEnergyScore() + h.get(i - 1).getEnergyScore()) / 2 < sum / (i + 1) * 0.9;
+                if (now) flagged++;
+                if (now && !was) crashes++;
+                was = now;
+            }
+            days += h.size();
+        }
+        System.out.printf("old rule (2-day average < 0.9 x overall): %d crashes, %.1f%% of %d days flagged%n",
+                crashes, percent(flagged, days), days);
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0.0 : 100.0 * part / whole;
+    }
+}
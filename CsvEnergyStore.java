@@ -0,0 +1,119 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+// The original energy_data.csv format, one toCSV() line per entry.
+public class CsvEnergyStore implements EnergyStore {
+    private static final int TAIL_BLOCK = 64 * 1024; // first backwards read in loadTail
+    private final Path path;
+
+    public CsvEnergyStore(String filename) {
+        this.path = Paths.get(filename);
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    @Override
+    public void load(Consumer<EnergyEntry> sink, EnergyCsvParser.ErrorHandler errors) throws IOException {
+        if (!exists()) return;
+        if (Files.size(path) >= BulkLoader.PARALLEL_THRESHOLD) {
+            for (EnergyEntry e : BulkLoader.load(path, errors)) sink.accept(e);
+            return;
+        }
+        byte[] data = Files.readAllBytes(path);
+        new EnergyCsvParser().parse(data, 0, data.length, 1,
+                (line, day, s, m, p, c, wt, pt, score) ->
+                        sink.accept(EnergyEntry.of(LocalDate.ofEpochDay(day), s, m, p, c, wt, pt, score)),
+                errors);
+    }
+
+    // The newest rows of the file, as read by loadTail.
+    public static final class Tail {
+        public final List<EnergyEntry> entries; // oldest first
+        public final boolean wholeFile;         // the read reached the start of the file
+
+        Tail(List<EnergyEntry> entries, boolean wholeFile) {
+            this.entries = entries;
+            this.wholeFile = wholeFile;
+        }
+    }
+
+    // The newest `n` entries, reading the file backwards through a FileChannel in
+    // growing blocks until enough complete lines are in hand, so the cost depends
+    // on n and not on the file size. Malformed rows are skipped silently (a full
+    // load reports them). Returns null when the rows read are not in strictly
+    // increasing date order, i.e. the file was not written by save().
+    public Tail loadTail(int n) throws IOException {
+        if (!exists()) return new Tail(new ArrayList<>(), true);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = ch.size();
+            long start = end;
+            byte[] data = new byte[0];
+            int wantLines = n + 1; // the first line read is usually cut off
+            int newlines = 0;
+            while (true) {
+                long from = Math.max(0, start - Math.max(TAIL_BLOCK, (long) data.length)); // doubles each round
+                byte[] grown = new byte[(int) (end - from)];
+                ByteBuffer buf = ByteBuffer.wrap(grown, 0, (int) (start - from));
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, from + buf.position()) < 0) throw new EOFException("file shrank while reading");
+                }
+                System.arraycopy(data, 0, grown, (int) (start - from), data.length);
+                for (int i = 0; i < start - from; i++) if (grown[i] == '\n') newlines++;
+                data = grown;
+                start = from;
+                if (newlines < wantLines && start > 0) continue;
+
+                // skip the partial first line unless it starts the file
+                int first = 0;
+                if (start > 0) {
+                    while (data[first] != '\n') first++;
+                    first++;
+                }
+                List<EnergyEntry> rows = new ArrayList<>();
+                new EnergyCsvParser().parse(data, first, data.length, 1,
+                        (line, day, s, m, p, c, wt, pt, score) ->
+                                rows.add(EnergyEntry.of(LocalDate.ofEpochDay(day), s, m, p, c, wt, pt, score)),
+                        null);
+                if (rows.size() < n && start > 0) {
+                    wantLines = newlines + (n - rows.size()) + 1; // malformed or blank lines in the way
+                    continue;
+                }
+                for (int i = 1; i < rows.size(); i++) {
+                    if (!rows.get(i).getDate().isAfter(rows.get(i - 1).getDate())) return null;
+                }
+                List<EnergyEntry> tail = rows.size() <= n ? rows : new ArrayList<>(rows.subList(rows.size() - n, rows.size()));
+                return new Tail(tail, start == 0 && tail.size() == rows.size());
+            }
+        }
+    }
+
+    // Written beside the file, synced, then swapped in.
+    @Override
+    public void save(Collection<EnergyEntry> entries) throws IOException {
+        Path tmp = EnergyStore.tempFile(path);
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+             PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)))) {
+            for (EnergyEntry e : entries) pw.println(e.toCSV());
+            if (pw.checkError()) throw new IOException("write error");
+            long t0 = System.nanoTime();
+            out.getChannel().force(true);
+            EnergyMetrics.FSYNC.record(System.nanoTime() - t0);
+        }
+        EnergyStore.replace(tmp, path);
+    }
+}
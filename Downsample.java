@@ -0,0 +1,51 @@
+// Largest-triangle-three-buckets (Steinarsson, 2013): picks `threshold` points
+// of a series that keep its visual shape. The first and last points are always
+// kept; every bucket in between contributes the point forming the largest
+// triangle with the previously kept point and the average of the next bucket.
+// One pass, O(n).
+public class Downsample {
+    private Downsample() {
+    }
+
+    // indices of the kept points, ascending; x must be ascending
+    public static int[] lttb(double[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+            return all;
+        }
+        if (threshold < 3) throw new IllegalArgumentException("threshold must be at least 3");
+        int[] kept = new int[threshold];
+        double every = (double) (n - 2) / (threshold - 2); // points per bucket, ends excluded
+        int a = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            // average of the next bucket (the last point for the final one)
+            int nextStart = (int) ((i + 1) * every) + 1;
+            int nextEnd = Math.min((int) ((i + 2) * every) + 1, n);
+            double avgX = 0, avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            avgX /= nextEnd - nextStart;
+            avgY /= nextEnd - nextStart;
+
+            int from = (int) (i * every) + 1;
+            int to = (int) ((i + 1) * every) + 1;
+            double maxArea = -1;
+            int best = from;
+            for (int j = from; j < to; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = j;
+                }
+            }
+            kept[i + 1] = best;
+            a = best;
+        }
+        kept[threshold - 1] = n - 1;
+        return kept;
+    }
+}
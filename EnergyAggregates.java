@@ -0,0 +1,158 @@
+import java.util.*;
+
+// Running aggregates behind the dashboard. EnergyTracker feeds every upsert
+// through update(), so reads never have to scan or sort the history.
+public class EnergyAggregates {
+    // score descending, then date ascending (same order a stable sort of the history gives)
+    private static final Comparator<EnergyEntry> BY_SCORE_DESC =
+            Comparator.comparingDouble(EnergyEntry::getEnergyScore).reversed()
+                    .thenComparing(EnergyEntry::getDate);
+
+    private int count;
+    private double sumScore;
+    private long sumSleep;
+
+    // rolling windows over the newest entries, sized by WindowSizes
+    private final RollingWindow prediction;
+    private final RollingWindow week;
+    private final RollingWindow correlation;
+    private final RollingWindow[] windows;
+    private final RollingWindow widest;
+
+    // top half of days by score and the peak-time counts inside it
+    private final TreeSet<EnergyEntry> upperHalf = new TreeSet<>(BY_SCORE_DESC);
+    private final TreeSet<EnergyEntry> lowerHalf = new TreeSet<>(BY_SCORE_DESC);
+    private final Map<String, Long> upperPeaks = new HashMap<>();
+
+    // next-day energy/mood regression, fed in date order like the windows
+    private final EnergyForecaster forecaster = new EnergyForecaster();
+    // crash detection (EWMA/CUSUM), fed the same way
+    private final CrashDetector crashes;
+
+    // weekly/monthly/yearly buckets for long-range graphs
+    private final EnergyRollups rollups = new EnergyRollups();
+
+    public EnergyAggregates() {
+        this(WindowSizes.DEFAULT);
+    }
+
+    public EnergyAggregates(WindowSizes sizes) {
+        prediction = new RollingWindow(sizes.prediction);
+        week = new RollingWindow(sizes.week);
+        correlation = new RollingWindow(sizes.correlation);
+        windows = new RollingWindow[]{prediction, week, correlation};
+        RollingWindow w = prediction;
+        for (RollingWindow r : windows) if (r.capacity() > w.capacity()) w = r;
+        widest = w;
+        crashes = new CrashDetector(CrashDetector.Config.DEFAULT.withRecentDays(sizes.crash));
+    }
+
+    // Recompute everything from the index; used after bulk loads.
+    public void rebuild(EnergyIndex index) {
+        count = 0;
+        sumScore = 0;
+        sumSleep = 0;
+        upperHalf.clear();
+        lowerHalf.clear();
+        upperPeaks.clear();
+        for (EnergyEntry e : index.values()) addTotals(e);
+        resetWindows(index);
+        forecaster.rebuild(index);
+        crashes.rebuild(index);
+        rollups.rebuild(index);
+    }
+
+    // `added` has just been upserted into `index`, replacing `replaced` (may be null).
+    public void update(EnergyEntry added, EnergyEntry replaced, EnergyIndex index) {
+        EnergyEntry newest = widest.size() == 0 ? null : widest.get(widest.size() - 1);
+        if (replaced != null) removeTotals(replaced);
+        addTotals(added);
+        rollups.update(added, replaced, index);
+
+        if (replaced == null && (newest == null || added.getDate().isAfter(newest.getDate()))) {
+            // plain append, the common daily case
+            for (RollingWindow w : windows) w.push(added);
+            forecaster.append(added);
+            crashes.append(added);
+            return;
+        }
+        EnergyEntry latest = forecaster.latest();
+        if (replaced != null && latest != null && added.getDate().equals(latest.getDate())) {
+            forecaster.replaceLatest(added); // re-entering today's data
+            crashes.replaceLatest(added);
+        } else {
+            forecaster.rebuild(index);
+            crashes.rebuild(index);
+        }
+        if (!widest.isFull() || !added.getDate().isBefore(widest.oldest().getDate())) {
+            // edit inside the tracked windows; refilling costs one step per window slot
+            resetWindows(index);
+        }
+    }
+
+    private void resetWindows(EnergyIndex index) {
+        List<EnergyEntry> tail = index.lastN(widest.capacity());
+        for (RollingWindow w : windows) w.reset(tail);
+    }
+
+    private void addTotals(EnergyEntry e) {
+        count++;
+        sumScore += e.getEnergyScore();
+        sumSleep += e.getSleepHours();
+        if (!upperHalf.isEmpty() && BY_SCORE_DESC.compare(e, upperHalf.last()) < 0) {
+            upperHalf.add(e);
+            countPeak(e, 1);
+        } else {
+            lowerHalf.add(e);
+        }
+        rebalance();
+    }
+
+    private void removeTotals(EnergyEntry e) {
+        count--;
+        sumScore -= e.getEnergyScore();
+        sumSleep -= e.getSleepHours();
+        if (upperHalf.remove(e)) countPeak(e, -1);
+        else lowerHalf.remove(e);
+        rebalance();
+    }
+
+    // keep upperHalf at max(1, n/2) entries
+    private void rebalance() {
+        int target = count == 0 ? 0 : Math.max(1, count / 2);
+        while (upperHalf.size() > target) {
+            EnergyEntry e = upperHalf.pollLast();
+            countPeak(e, -1);
+            lowerHalf.add(e);
+        }
+        while (upperHalf.size() < target && !lowerHalf.isEmpty()) {
+            EnergyEntry e = lowerHalf.pollFirst();
+            upperHalf.add(e);
+            countPeak(e, 1);
+        }
+    }
+
+    private void countPeak(EnergyEntry e, int delta) {
+        String t = e.getPeakTime();
+        if (t == null || t.isEmpty()) return;
+        long n = upperPeaks.getOrDefault(t, 0L) + delta;
+        if (n == 0) upperPeaks.remove(t);
+        else upperPeaks.put(t, n);
+    }
+
+    public int count() { return count; }
+    public double averageScore() { return count == 0 ? 0.0 : sumScore / count; }
+    public double averageSleep() { return count == 0 ? 0.0 : (double) sumSleep / count; }
+
+    public RollingWindow prediction() { return prediction; }
+    public RollingWindow week() { return week; }
+    public RollingWindow correlation() { return correlation; }
+    public EnergyForecaster forecaster() { return forecaster; }
+    public CrashDetector crashes() { return crashes; }
+    public EnergyRollups rollups() { return rollups; }
+
+    // peak-time counts among the top half of days by energy score
+    public Map<String, Long> topHalfPeakCounts() {
+        return Collections.unmodifiableMap(upperPeaks);
+    }
+}
@@ -0,0 +1,153 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+// Dependency-free benchmark harness for the tracker's hot paths.
+// Each case is warmed up, then run repeatedly for a fixed time; the report
+// gives average time per operation and bytes allocated per operation on the
+// calling thread (work done on the fork-join pool is not included).
+//
+// Usage: java EnergyBenchmark [history sizes...]      default: 1000 100000
+//        java EnergyBenchmark 1000 100000 10000000    add the 10M history (needs a large heap)
+public class EnergyBenchmark {
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // results land here so the JIT cannot drop the work
+    private static volatile int sink;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[]{1000, 100000} : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        Path dir = Files.createTempDirectory("energy-bench");
+        System.out.printf("%-32s %10s %14s %14s %10s%n", "benchmark", "history", "ns/op", "B/op", "ops");
+
+        for (Map.Entry<String, Callable<Object>> c : entryCases().entrySet()) bench(c.getKey(), 1, c.getValue());
+
+        for (int size : sizes) {
+            List<Closeable> open = new ArrayList<>();
+            for (Map.Entry<String, Callable<Object>> c : historyCases(dir, size, open).entrySet()) {
+                bench(c.getKey(), size, c.getValue());
+            }
+            for (Closeable c : open) c.close();
+        }
+        System.out.println();
+        System.out.println(EnergyMetrics.summary());
+    }
+
+    // The cases, by name in run order, shared with the JMH benchmarks under jmh/.
+    // JMH refuses benchmark classes in the default package, so those look these
+    // up by name through reflection; only java.* types cross over.
+
+    public static Map<String, Callable<Object>> entryCases() {
+        Map<String, Callable<Object>> cases = new LinkedHashMap<>();
+        String line = entry(LocalDate.of(2024, 1, 1), 1).toCSV();
+        EnergyEntry parsed = EnergyEntry.fromCSV(line);
+        cases.put("EnergyEntry.fromCSV", () -> EnergyEntry.fromCSV(line));
+        cases.put("EnergyEntry.toCSV", parsed::toCSV);
+        return cases;
+    }
+
+    // Cases over a synthetic history of `size` days written into `dir`; every case
+    // that writes gets its own copy of the file. The trackers are added to `open`
+    // for the caller to close.
+    public static Map<String, Callable<Object>> historyCases(Path dir, int size, List<Closeable> open)
+            throws IOException {
+        Map<String, Callable<Object>> cases = new LinkedHashMap<>();
+        Path csv = dir.resolve("history_" + size + ".csv");
+        writeHistory(csv, size);
+        String file = csv.toString();
+
+        cases.put("EnergyTracker.<init> (load)", () -> new EnergyTracker(file));
+        cases.put("FileManager.loadCSV", () -> FileManager.loadCSV(file));
+
+        EnergyTracker cached = new EnergyTracker(file);
+        cases.put("summaryDashboard (cached)", cached::summaryDashboard);
+        EnergyTracker tracker = new EnergyTracker(file);
+        tracker.setResultCache(null);
+        cases.put("summaryDashboard", tracker::summaryDashboard);
+        cases.put("sleepEnergyCorrelation", tracker::sleepEnergyCorrelation);
+        cases.put("recommendDeepWorkTime", tracker::recommendDeepWorkTime);
+
+        // appends past the end of the history, the daily case
+        cases.put("addEntry (rewrite)", appending(new EnergyTracker(copy(csv, "rewrite")), open));
+        cases.put("addEntry (journaled)", appending(new EnergyTracker(copy(csv, "journaled"), true), open));
+        EnergyTracker async = new EnergyTracker(copy(csv, "async"));
+        async.persistAsync(100, 1000);
+        cases.put("addEntry (async)", appending(async, open));
+
+        // re-imports the first 1000 days of history in one batch
+        EnergyTracker bulk = new EnergyTracker(copy(csv, "bulk"));
+        List<EnergyEntry> batch = new ArrayList<>(bulk.getRange(LocalDate.MIN, LocalDate.MAX)
+                .subList(0, Math.min(1000, size)));
+        cases.put("addAll (1000 back-filled)", () -> bulk.addAll(batch));
+        open.add(cached::close);
+        open.add(tracker::close);
+        open.add(bulk::close);
+        return cases;
+    }
+
+    // adds the day after the newest one on every call
+    private static Callable<Object> appending(EnergyTracker t, List<Closeable> open) {
+        open.add(t::close);
+        LocalDate[] next = {t.getLast(1).get(0).getDate()};
+        return () -> {
+            next[0] = next[0].plusDays(1);
+            t.addEntry(entry(next[0], next[0].getDayOfYear()));
+            return next[0];
+        };
+    }
+
+    private static String copy(Path csv, String suffix) throws IOException {
+        String name = csv.getFileName().toString().replace(".csv", "_" + suffix + ".csv");
+        Path to = csv.resolveSibling(name);
+        Files.copy(csv, to, StandardCopyOption.REPLACE_EXISTING);
+        return to.toString();
+    }
+
+    private static void bench(String name, int size, Callable<Object> op) throws Exception {
+        runFor(op, WARMUP_NANOS);
+        long tid = Thread.currentThread().getId();
+        long bytes0 = THREADS.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        long ops = runFor(op, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - t0;
+        long bytes = THREADS.getThreadAllocatedBytes(tid) - bytes0;
+        System.out.printf("%-32s %10d %14.1f %14d %10d%n", name, size,
+                (double) elapsed / ops, bytes / ops, ops);
+    }
+
+    // run op until `nanos` have passed (at least once); returns the number of calls
+    private static long runFor(Callable<Object> op, long nanos) throws Exception {
+        long end = System.nanoTime() + nanos;
+        long ops = 0;
+        do {
+            Object r = op.call();
+            sink += (r == null) ? 0 : r.hashCode();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private static EnergyEntry entry(LocalDate d, int seed) {
+        return new EnergyEntry(d, 4 + seed % 6, 1 + seed % 5, 1 + (seed / 5) % 5, seed % 4,
+                seed % 3 == 0 ? "Study" : "Creative", "MAN".substring(seed % 3, seed % 3 + 1));
+    }
+
+    // one synthetic entry per day, date-ordered like a saved tracker file
+    private static void writeHistory(Path csv, int size) throws IOException {
+        Random r = new Random(size);
+        LocalDate d = LocalDate.of(2000, 1, 1).minusDays(size);
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(csv))) {
+            for (int i = 0; i < size; i++) {
+                pw.println(entry(d, r.nextInt(1000)).toCSV());
+                d = d.plusDays(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.*;
+
+// Bitmap indexes over a history in date order (row i is the i-th oldest entry,
+// the same rows as EnergyColumns): for every EnergyQuery.Field one BitSet per
+// distinct value, marking the rows that hold it. Fields have a handful of values
+// each, so the whole index is a few dozen bits per row.
+public class EnergyBitmaps {
+    private final EnumMap<EnergyQuery.Field, Map<String, BitSet>> bitmaps = new EnumMap<>(EnergyQuery.Field.class);
+    private int rows;
+
+    public EnergyBitmaps() {
+        for (EnergyQuery.Field f : EnergyQuery.Field.values()) bitmaps.put(f, new HashMap<>());
+    }
+
+    public static EnergyBitmaps of(Collection<EnergyEntry> history) {
+        EnergyBitmaps b = new EnergyBitmaps();
+        for (EnergyEntry e : history) b.append(e);
+        return b;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    // `e` is newer than every indexed row
+    public void append(EnergyEntry e) {
+        set(rows++, e, true);
+    }
+
+    // the entry at `row` changed from `old` to `e` (same date)
+    public void replace(int row, EnergyEntry old, EnergyEntry e) {
+        set(row, old, false);
+        set(row, e, true);
+    }
+
+    private void set(int row, EnergyEntry e, boolean value) {
+        for (Map.Entry<EnergyQuery.Field, Map<String, BitSet>> f : bitmaps.entrySet()) {
+            String key = f.getKey().of(e);
+            if (value) f.getValue().computeIfAbsent(key, k -> new BitSet()).set(row);
+            else f.getValue().getOrDefault(key, new BitSet()).clear(row);
+        }
+    }
+
+    // rows holding `value`; shared, do not modify
+    BitSet rowsWith(EnergyQuery.Field field, String value) {
+        BitSet b = bitmaps.get(field).get(value);
+        return b == null ? new BitSet() : b;
+    }
+
+    // distinct values seen for `field` (some may no longer match any row)
+    Set<String> values(EnergyQuery.Field field) {
+        return bitmaps.get(field).keySet();
+    }
+}
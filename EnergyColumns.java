@@ -0,0 +1,182 @@
+import java.time.LocalDate;
+import java.util.*;
+
+// Column-oriented copy of an entry history: one primitive array per field,
+// rows sorted by epoch-day with one row per day. workType and peakTime are
+// dictionary-encoded into int codes (workType is free text, so a history may
+// hold any number of distinct values). Scans go through a reusable Cursor,
+// so reading a million rows allocates nothing.
+public class EnergyColumns {
+    private int size;
+    private int[] epochDay;
+    private int[] sleep;
+    private int[] mood;
+    private int[] productivity;
+    private int[] caffeine;
+    private double[] score;
+    private int[] workType;
+    private int[] peakTime;
+
+    private final List<String> workTypeNames = new ArrayList<>();
+    private final Map<String, Integer> workTypeCodes = new HashMap<>();
+    private final List<String> peakTimeNames = new ArrayList<>();
+    private final Map<String, Integer> peakTimeCodes = new HashMap<>();
+
+    public EnergyColumns() {
+        this(16);
+    }
+
+    public EnergyColumns(int capacity) {
+        capacity = Math.max(1, capacity);
+        epochDay = new int[capacity];
+        sleep = new int[capacity];
+        mood = new int[capacity];
+        productivity = new int[capacity];
+        caffeine = new int[capacity];
+        score = new double[capacity];
+        workType = new int[capacity];
+        peakTime = new int[capacity];
+    }
+
+    public static EnergyColumns of(Collection<EnergyEntry> entries) {
+        EnergyColumns c = new EnergyColumns(entries.size());
+        for (EnergyEntry e : entries) c.upsert(e);
+        return c;
+    }
+
+    public void upsert(EnergyEntry e) {
+        upsert((int) e.getDate().toEpochDay(), e.getSleepHours(), e.getMood(), e.getProductivity(),
+                e.getCaffeine(), e.getWorkType(), e.getPeakTime(), e.getEnergyScore());
+    }
+
+    // Insert or replace the row for `day`. Appending a newer day is O(1) amortized;
+    // back-dated inserts shift the tail of every column.
+    public void upsert(int day, int sleepHours, int moodValue, int prod, int caf,
+                       String wt, String pt, double energyScore) {
+        int row;
+        if (size == 0 || day > epochDay[size - 1]) {
+            row = size;
+            grow();
+            size++;
+        } else {
+            row = Arrays.binarySearch(epochDay, 0, size, day);
+            if (row < 0) {
+                row = -row - 1;
+                grow();
+                shift(row);
+                size++;
+            }
+        }
+        epochDay[row] = day;
+        sleep[row] = sleepHours;
+        mood[row] = moodValue;
+        productivity[row] = prod;
+        caffeine[row] = caf;
+        score[row] = energyScore;
+        workType[row] = code(wt, workTypeNames, workTypeCodes);
+        peakTime[row] = code(pt, peakTimeNames, peakTimeCodes);
+    }
+
+    private void grow() {
+        if (size < epochDay.length) return;
+        int cap = epochDay.length * 2;
+        epochDay = Arrays.copyOf(epochDay, cap);
+        sleep = Arrays.copyOf(sleep, cap);
+        mood = Arrays.copyOf(mood, cap);
+        productivity = Arrays.copyOf(productivity, cap);
+        caffeine = Arrays.copyOf(caffeine, cap);
+        score = Arrays.copyOf(score, cap);
+        workType = Arrays.copyOf(workType, cap);
+        peakTime = Arrays.copyOf(peakTime, cap);
+    }
+
+    private void shift(int row) {
+        int n = size - row;
+        System.arraycopy(epochDay, row, epochDay, row + 1, n);
+        System.arraycopy(sleep, row, sleep, row + 1, n);
+        System.arraycopy(mood, row, mood, row + 1, n);
+        System.arraycopy(productivity, row, productivity, row + 1, n);
+        System.arraycopy(caffeine, row, caffeine, row + 1, n);
+        System.arraycopy(score, row, score, row + 1, n);
+        System.arraycopy(workType, row, workType, row + 1, n);
+        System.arraycopy(peakTime, row, peakTime, row + 1, n);
+    }
+
+    private static int code(String s, List<String> names, Map<String, Integer> codes) {
+        Integer c = codes.get(s);
+        if (c != null) return c;
+        int code = names.size();
+        names.add(s);
+        codes.put(s, code);
+        return code;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // row of `date`, or -1
+    public int find(LocalDate date) {
+        int row = Arrays.binarySearch(epochDay, 0, size, (int) date.toEpochDay());
+        return row < 0 ? -1 : row;
+    }
+
+    public int epochDay(int row) { return epochDay[row]; }
+    public int sleep(int row) { return sleep[row]; }
+    public int mood(int row) { return mood[row]; }
+    public int productivity(int row) { return productivity[row]; }
+    public int caffeine(int row) { return caffeine[row]; }
+    public double score(int row) { return score[row]; }
+    public int workTypeCode(int row) { return workType[row]; }
+    public int peakTimeCode(int row) { return peakTime[row]; }
+    public String workType(int row) { return workTypeNames.get(workType[row]); }
+    public String peakTime(int row) { return peakTimeNames.get(peakTime[row]); }
+
+    // Backing arrays for bulk kernels such as ParallelStats; only the first size()
+    // slots are rows. Read-only, and invalid after the next upsert.
+    int[] sleepArray() { return sleep; }
+    int[] moodArray() { return mood; }
+    int[] productivityArray() { return productivity; }
+    int[] caffeineArray() { return caffeine; }
+    double[] scoreArray() { return score; }
+    int[] peakTimeArray() { return peakTime; }
+
+    public int workTypeCount() { return workTypeNames.size(); }
+    public int peakTimeCount() { return peakTimeNames.size(); }
+    public String workTypeName(int code) { return workTypeNames.get(code); }
+    public String peakTimeName(int code) { return peakTimeNames.get(code); }
+
+    public EnergyEntry toEntry(int row) {
+        return EnergyEntry.of(LocalDate.ofEpochDay(epochDay[row]), sleep[row], mood[row],
+                productivity[row], caffeine[row], workType(row), peakTime(row), score[row]);
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Flyweight over one row at a time; call next() before the first read.
+    public class Cursor {
+        private int row = -1;
+
+        public boolean next() {
+            return ++row < size;
+        }
+
+        public void seek(int r) {
+            row = r - 1;
+        }
+
+        public int row() { return row; }
+        public int epochDay() { return epochDay[row]; }
+        public int sleep() { return sleep[row]; }
+        public int mood() { return mood[row]; }
+        public int productivity() { return productivity[row]; }
+        public int caffeine() { return caffeine[row]; }
+        public double score() { return score[row]; }
+        public int workTypeCode() { return workType[row]; }
+        public int peakTimeCode() { return peakTime[row]; }
+        public String workType() { return workTypeNames.get(workType[row]); }
+        public String peakTime() { return peakTimeNames.get(peakTime[row]); }
+    }
+}
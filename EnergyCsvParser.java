@@ -0,0 +1,317 @@
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+// Hand-rolled parser for energy CSV rows, working directly on bytes:
+// date,sleep,mood,productivity,caffeine,workType,peakTime[,score]
+// Each byte is looked at once: dates and numbers are decoded in place,
+// repeated workType/peakTime values come from a small cache, and bad rows
+// are reported with their line number. Not thread-safe; use one parser per thread.
+public class EnergyCsvParser {
+
+    public interface RowHandler {
+        void row(long line, int epochDay, int sleep, int mood, int productivity, int caffeine,
+                 String workType, String peakTime, double score);
+    }
+
+    public interface ErrorHandler {
+        void malformed(long line, String reason);
+    }
+
+    private static final long DAYS_0000_TO_1970 = 719528L;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    private static final int CACHE_SIZE = 64; // power of two
+
+    private static final ThreadLocal<EnergyCsvParser> LOCAL = ThreadLocal.withInitial(EnergyCsvParser::new);
+
+    private final byte[][] cacheKeys = new byte[CACHE_SIZE][];
+    private final String[] cacheValues = new String[CACHE_SIZE];
+
+    // parse state
+    private byte[] buf;
+    private int pos;     // next byte to read
+    private int end;     // end of the range being parsed
+    private boolean eol; // the last field read was the final one on its line
+    private String error;
+    private boolean scoreValid;
+    private long nextLine;
+    // rows are usually date-ordered, so remember the last month seen
+    private int cachedYearMonth = -1;
+    private int cachedMonthLength;
+    private long cachedMonthStart;
+
+    // Parse every line in data[from, to). Lines are numbered from firstLine and
+    // may end in \n, \r or \r\n. Blank lines are skipped; returns the number of
+    // rows handed to `rows`.
+    public int parse(byte[] data, int from, int to, long firstLine, RowHandler rows, ErrorHandler errors) {
+        buf = data;
+        pos = from;
+        end = to;
+        int parsed = 0;
+        long line = firstLine;
+        while (pos < end) {
+            if (parseRow(line, rows)) parsed++;
+            else if (error != null && errors != null) errors.malformed(line, error);
+            skipLine();
+            line++;
+        }
+        buf = null;
+        nextLine = line;
+        return parsed;
+    }
+
+    // number the line after the last one parsed would get
+    public long nextLine() {
+        return nextLine;
+    }
+
+    // Single-line entry point behind EnergyEntry.fromCSV.
+    public static EnergyEntry parseEntry(String csvLine) {
+        EnergyCsvParser p = LOCAL.get();
+        byte[] data = csvLine.getBytes(StandardCharsets.UTF_8);
+        EnergyEntry[] out = new EnergyEntry[1];
+        p.error = null;
+        p.parse(data, 0, data.length, 1, (line, day, s, m, pr, c, wt, pt, score) ->
+                out[0] = EnergyEntry.of(LocalDate.ofEpochDay(day), s, m, pr, c, wt, pt, score), null);
+        if (out[0] == null) {
+            throw new IllegalArgumentException(p.error == null ? "empty line" : p.error);
+        }
+        return out[0];
+    }
+
+    // false with error == null means a blank line
+    private boolean parseRow(long line, RowHandler rows) {
+        error = null;
+        eol = false;
+        while (pos < end && (buf[pos] & 0xFF) <= ' ' && !isLineEnd(buf[pos])) pos++;
+        if (pos == end || isLineEnd(buf[pos])) return false;
+
+        int day = parseDate();
+        int sleep = parseIntField("sleep");
+        int mood = parseIntField("mood");
+        int productivity = parseIntField("productivity");
+        int caffeine = parseIntField("caffeine");
+        String workType = textField("workType");
+        String peakTime = textField("peakTime");
+        if (error != null) return false;
+
+        double score = EnergyEntry.computeScore(sleep, mood, productivity, caffeine);
+        if (!eol) {
+            double stored = parseScore();
+            if (scoreValid) score = stored;
+        }
+        rows.row(line, day, sleep, mood, productivity, caffeine, workType, peakTime, score);
+        return true;
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private boolean isDelimiter(int i) {
+        return i == end || buf[i] == ',' || isLineEnd(buf[i]);
+    }
+
+    // first delimiter at or after i
+    private int fieldEnd(int i) {
+        while (!isDelimiter(i)) i++;
+        return i;
+    }
+
+    // step over the delimiter at i
+    private void finishField(int i) {
+        if (i < end && buf[i] == ',') {
+            pos = i + 1;
+        } else {
+            pos = i;
+            eol = true;
+        }
+    }
+
+    // move past whatever is left of the current line, including its terminator
+    private void skipLine() {
+        while (pos < end && !isLineEnd(buf[pos])) pos++;
+        if (pos < end && buf[pos++] == '\r' && pos < end && buf[pos] == '\n') pos++;
+    }
+
+    private boolean fieldMissing(String name) {
+        if (error != null) return true;
+        if (eol) {
+            error = "missing " + name;
+            return true;
+        }
+        return false;
+    }
+
+    private int parseDate() {
+        int f = pos;
+        if (f + 10 <= end && isDelimiter(f + 10) && buf[f + 4] == '-' && buf[f + 7] == '-') {
+            int y = digits(f, f + 4);
+            int m = digits(f + 5, f + 7);
+            int d = digits(f + 8, f + 10);
+            if (y >= 0 && m >= 1 && m <= 12 && d >= 1) {
+                int yearMonth = y * 12 + m;
+                if (yearMonth != cachedYearMonth) {
+                    cachedYearMonth = yearMonth;
+                    cachedMonthLength = lengthOfMonth(y, m);
+                    cachedMonthStart = epochDay(y, m, 1);
+                }
+                if (d <= cachedMonthLength) {
+                    finishField(f + 10);
+                    return (int) (cachedMonthStart + d - 1);
+                }
+            }
+        }
+        // anything unusual (signed or 5+ digit years, bad digits) goes through the JDK for the exact rules
+        int e = fieldEnd(f);
+        finishField(e);
+        String text = string(f, e);
+        try {
+            return (int) LocalDate.parse(text).toEpochDay();
+        } catch (DateTimeParseException ex) {
+            error = "bad date '" + text + "'";
+            return 0;
+        }
+    }
+
+    // unsigned ASCII digits in [f, e), or -1
+    private int digits(int f, int e) {
+        int v = 0;
+        for (int i = f; i < e; i++) {
+            int c = buf[i] - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+
+    // same inputs as Integer.parseInt for ASCII digits
+    private int parseIntField(String name) {
+        if (fieldMissing(name)) return 0;
+        int f = pos;
+        int i = f;
+        boolean neg = false;
+        if (!isDelimiter(i) && (buf[i] == '-' || buf[i] == '+')) {
+            neg = buf[i] == '-';
+            i++;
+        }
+        boolean ok = !isDelimiter(i);
+        long v = 0;
+        for (; !isDelimiter(i); i++) {
+            int c = buf[i] - '0';
+            if (c < 0 || c > 9 || v > Integer.MAX_VALUE + 1L) ok = false;
+            else v = v * 10 + c;
+        }
+        finishField(i);
+        if (neg) v = -v;
+        if (!ok || v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            error = "bad " + name + " '" + string(f, i).trim() + "'";
+            return 0;
+        }
+        return (int) v;
+    }
+
+    private String textField(String name) {
+        if (fieldMissing(name)) return null;
+        int f = pos;
+        int e = fieldEnd(f);
+        finishField(e);
+        if (eol) {
+            // the line's trailing whitespace is not part of the value
+            while (e > f && (buf[e - 1] & 0xFF) <= ' ') e--;
+        }
+        return text(f, e);
+    }
+
+    // clears scoreValid when the field is not a number (the caller keeps the computed score)
+    private double parseScore() {
+        scoreValid = true;
+        int f = pos;
+        int i = f;
+        boolean neg = false;
+        if (!isDelimiter(i) && (buf[i] == '-' || buf[i] == '+')) {
+            neg = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int fraction = -1; // digits after the point, -1 before seeing one
+        for (; !isDelimiter(i); i++) {
+            byte b = buf[i];
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int c = b - '0';
+            if (c < 0 || c > 9 || digitCount == 15) return slowScore(f, fieldEnd(i));
+            mantissa = mantissa * 10 + c;
+            digitCount++;
+            if (fraction >= 0) fraction++;
+        }
+        if (digitCount == 0) return slowScore(f, i);
+        // mantissa < 2^53 divided by an exact power of ten: one correctly rounded
+        // division, identical to Double.parseDouble
+        double v = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+        return neg ? -v : v;
+    }
+
+    // exponents, padding, "NaN", "Infinity" and the like
+    private double slowScore(int f, int e) {
+        try {
+            return Double.parseDouble(string(f, e));
+        } catch (NumberFormatException ex) {
+            scoreValid = false;
+            return 0;
+        }
+    }
+
+    // Decode [f, e) as UTF-8, reusing the String from the last time these bytes were seen.
+    private String text(int f, int e) {
+        int len = e - f;
+        int h = len;
+        for (int i = f; i < e; i++) h = 31 * h + buf[i];
+        int slot = (h ^ (h >>> 16)) & (CACHE_SIZE - 1);
+        byte[] key = cacheKeys[slot];
+        if (key != null && key.length == len) {
+            int i = 0;
+            while (i < len && key[i] == buf[f + i]) i++;
+            if (i == len) return cacheValues[slot];
+        }
+        key = Arrays.copyOfRange(buf, f, e);
+        String s = new String(key, StandardCharsets.UTF_8);
+        cacheKeys[slot] = key;
+        cacheValues[slot] = s;
+        return s;
+    }
+
+    private String string(int f, int e) {
+        return new String(buf, f, e - f, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isLeap(long y) {
+        return (y & 3) == 0 && (y % 100 != 0 || y % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int y, int m) {
+        switch (m) {
+            case 2: return isLeap(y) ? 29 : 28;
+            case 4: case 6: case 9: case 11: return 30;
+            default: return 31;
+        }
+    }
+
+    // same arithmetic as LocalDate.toEpochDay, for years 0..9999
+    private static long epochDay(long y, long m, long d) {
+        long total = 365 * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367 * m - 362) / 12;
+        total += d - 1;
+        if (m > 2) {
+            total--;
+            if (!isLeap(y)) total--;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
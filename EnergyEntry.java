@@ -25,22 +25,19 @@ public class EnergyEntry {
         calculateScore();
     }
 
-    // parse from CSV line
+    // rebuild an entry whose score is already known (e.g. read back from storage)
+    static EnergyEntry of(LocalDate date, int sleepHours, int mood, int productivity,
+                          int caffeine, String workType, String peakTime, double energyScore) {
+        EnergyEntry e = new EnergyEntry(date, sleepHours, mood, productivity, caffeine, workType, peakTime);
+        e.energyScore = energyScore;
+        return e;
+    }
+
+    // parse from CSV line; throws IllegalArgumentException on a malformed row
     public static EnergyEntry fromCSV(String csvLine) {
         // date,sleep,mood,productivity,caffeine,workType,peakTime,score
-        String[] parts = csvLine.split(",", -1);
-        LocalDate d = LocalDate.parse(parts[0], fmt);
-        int s = Integer.parseInt(parts[1]);
-        int m = Integer.parseInt(parts[2]);
-        int p = Integer.parseInt(parts[3]);
-        int c = Integer.parseInt(parts[4]);
-        String wt = parts[5];
-        String pt = parts[6];
-        EnergyEntry e = new EnergyEntry(d, s, m, p, c, wt, pt);
-        try {
-            e.energyScore = Double.parseDouble(parts[7]);
-        } catch (Exception ex) { /* ignore and keep computed */ }
-        return e;
+        // a missing or unreadable score keeps the computed one
+        return EnergyCsvParser.parseEntry(csvLine);
     }
 
     // CSV line
@@ -58,10 +55,14 @@ public class EnergyEntry {
     }
 
     private void calculateScore() {
+        this.energyScore = computeScore(sleepHours, mood, productivity, caffeine);
+    }
+
+    static double computeScore(int sleepHours, int mood, int productivity, int caffeine) {
         // Intentionally simple and explainable:
         // Energy Score = (Sleep × 2) + (Mood × 3) + (Productivity × 3) − (Caffeine × 1)
-        this.energyScore = (sleepHours * 2.0) + (mood * 3.0) + (productivity * 3.0) - (caffeine * 1.0);
-        if (this.energyScore < 0) this.energyScore = 0;
+        // unless other weights are configured, see LinearScoringModel
+        return LinearScoringModel.DEFAULT.score(sleepHours, mood, productivity, caffeine);
     }
 
     private String sanitize(String s) {
@@ -83,8 +84,19 @@ public class EnergyEntry {
 
     @Override
     public String toString() {
-        return String.format("%s | Sleep:%d Mood:%d Prod:%d Caf:%d Type:%s Peak:%s Score:%.2f",
-                date.format(fmt), sleepHours, mood, productivity, caffeine, workType,
-                (peakTime == null || peakTime.isEmpty() ? "-" : peakTime), energyScore);
+        return appendTo(new StringBuilder(96)).toString();
+    }
+
+    // same text as toString(), written into a report being built
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append(date.format(fmt))
+                .append(" | Sleep:").append(sleepHours)
+                .append(" Mood:").append(mood)
+                .append(" Prod:").append(productivity)
+                .append(" Caf:").append(caffeine)
+                .append(" Type:").append(workType)
+                .append(" Peak:").append(peakTime == null || peakTime.isEmpty() ? "-" : peakTime)
+                .append(" Score:");
+        return ReportFormat.appendFixed(sb, energyScore, 2);
     }
 }
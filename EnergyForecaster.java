@@ -0,0 +1,239 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+// Online forecaster for the next day's energy score and mood: exponentially
+// weighted ridge regression over the previous day's sleep, caffeine, mood,
+// productivity, score and score trend, its work type and the target day of
+// week. The normal equations are kept in information form, A = ridge + sum of
+// forgetting^age * x x^T, so old days fade out exactly and a feature that never
+// varies cannot blow up (plain RLS with forgetting winds up there). Both targets
+// share the features, so one A serves two weight vectors. Each new day costs a
+// rank-one update and a FEATURES x FEATURES Cholesky solve, and the state is a
+// fixed size; a prediction is one dot product.
+public class EnergyForecaster {
+    public static final double DEFAULT_FORGETTING = 0.99;
+    // bias, 6 numeric, 3 work types (Mixed/other is the baseline), Mon..Sat (Sunday is the baseline)
+    static final int FEATURES = 1 + 6 + 3 + 6;
+    // days needed before predictions are trusted over a plain average
+    static final int WARMUP = 2 * FEATURES;
+    private static final double RIDGE = 1.0;        // in days of data; the bias is left unpenalized
+    private static final double BIAS_RIDGE = 1e-6;  // just keeps A positive definite
+    private static final double TREND_ALPHA = 0.3;  // EWMA weight of the newest score
+
+    private final double forgetting;
+    // days older than this carry weight below 1e-9 after forgetting, so rebuild() replays only them
+    private final int horizon;
+
+    private final double[] a = new double[FEATURES * FEATURES];
+    private final double[] energyTarget = new double[FEATURES]; // sum of forgetting^age * x * energy
+    private final double[] moodTarget = new double[FEATURES];
+    private final double[] energyWeights = new double[FEATURES];
+    private final double[] moodWeights = new double[FEATURES];
+    private EnergyEntry latest;
+    private double trend;  // EWMA of scores up to latest
+    private int samples;   // (day, next day) pairs learned
+
+    // state before the newest day was learned, so it can be replaced in O(1)
+    private final double[] savedA = new double[FEATURES * FEATURES];
+    private final double[] savedEnergyTarget = new double[FEATURES];
+    private final double[] savedMoodTarget = new double[FEATURES];
+    private final double[] savedEnergy = new double[FEATURES];
+    private final double[] savedMood = new double[FEATURES];
+    private EnergyEntry savedLatest;
+    private double savedTrend;
+    private int savedSamples;
+
+    // scratch space for learn(); writers only
+    private final double[] x = new double[FEATURES];
+    private final double[] chol = new double[FEATURES * FEATURES];
+
+    public EnergyForecaster() {
+        this(DEFAULT_FORGETTING);
+    }
+
+    // `forgetting` in (0, 1]: the weight of a day shrinks by this factor per newer day
+    public EnergyForecaster(double forgetting) {
+        if (!(forgetting > 0 && forgetting <= 1)) throw new IllegalArgumentException("forgetting must be in (0, 1]");
+        this.forgetting = forgetting;
+        this.horizon = forgetting == 1 ? Integer.MAX_VALUE
+                : (int) Math.min(Integer.MAX_VALUE, Math.ceil(Math.log(1e-9) / Math.log(forgetting)));
+        reset();
+    }
+
+    // rebuild() learns from at most the newest horizon() + 1 days
+    int horizon() {
+        return horizon;
+    }
+
+    public void reset() {
+        Arrays.fill(a, 0);
+        for (int i = 0; i < FEATURES; i++) a[i * FEATURES + i] = ridge(i);
+        Arrays.fill(energyTarget, 0);
+        Arrays.fill(moodTarget, 0);
+        Arrays.fill(energyWeights, 0);
+        Arrays.fill(moodWeights, 0);
+        latest = null;
+        trend = 0;
+        samples = 0;
+        save();
+    }
+
+    private static double ridge(int feature) {
+        return feature == 0 ? BIAS_RIDGE : RIDGE;
+    }
+
+    // Retrain on the index's newest days (the ones that still carry weight).
+    public void rebuild(EnergyIndex index) {
+        reset();
+        List<EnergyEntry> tail = index.lastN((int) Math.min(index.size(), (long) horizon + 1));
+        for (EnergyEntry e : tail) append(e);
+    }
+
+    // `e` is the day after latest(): learn (latest -> e) and move on.
+    public void append(EnergyEntry e) {
+        save();
+        if (latest != null) learn(e);
+        trend = latest == null ? e.getEnergyScore() : TREND_ALPHA * e.getEnergyScore() + (1 - TREND_ALPHA) * trend;
+        latest = e;
+    }
+
+    // `e` replaces latest() (same date, edited): undo its update and learn it again.
+    public void replaceLatest(EnergyEntry e) {
+        restore();
+        append(e);
+    }
+
+    public EnergyEntry latest() { return latest; }
+    public int samples() { return samples; }
+    public boolean isWarm() { return samples >= WARMUP; }
+
+    // forecast for the day after latest(); 0 before any data
+    public double predictEnergy() {
+        if (latest == null) return 0.0;
+        return Math.max(0.0, dot(energyWeights, latest, trend, latest.getDate().plusDays(1)));
+    }
+
+    // forecast mood (1-5) for the day after latest(); 3 before any data
+    public double predictMood() {
+        if (latest == null) return 3.0;
+        return Math.min(5.0, Math.max(1.0, dot(moodWeights, latest, trend, latest.getDate().plusDays(1))));
+    }
+
+    // fold in features of `latest` with targets from `next`, then re-solve both weight vectors
+    private void learn(EnergyEntry next) {
+        features(x, latest, trend, next.getDate());
+        double keep = forgetting;
+        for (int i = 0; i < FEATURES; i++) {
+            int row = i * FEATURES;
+            for (int j = i; j < FEATURES; j++) {
+                double v = keep * a[row + j] + x[i] * x[j];
+                a[row + j] = v;
+                a[j * FEATURES + i] = v;
+            }
+            // put back the ridge share that was just decayed, so it stays constant
+            a[row + i] += (1 - keep) * ridge(i);
+            energyTarget[i] = keep * energyTarget[i] + x[i] * next.getEnergyScore();
+            moodTarget[i] = keep * moodTarget[i] + x[i] * next.getMood();
+        }
+        if (factor()) {
+            solve(energyTarget, energyWeights);
+            solve(moodTarget, moodWeights);
+        }
+        samples++;
+    }
+
+    // Cholesky A = L L^T into chol (lower triangle); false if A lost positive definiteness
+    private boolean factor() {
+        for (int i = 0; i < FEATURES; i++) {
+            for (int j = 0; j <= i; j++) {
+                double s = a[i * FEATURES + j];
+                for (int k = 0; k < j; k++) s -= chol[i * FEATURES + k] * chol[j * FEATURES + k];
+                if (i == j) {
+                    if (!(s > 0)) return false;
+                    chol[i * FEATURES + i] = Math.sqrt(s);
+                } else {
+                    chol[i * FEATURES + j] = s / chol[j * FEATURES + j];
+                }
+            }
+        }
+        return true;
+    }
+
+    // w = A^-1 b with the factor from factor()
+    private void solve(double[] b, double[] w) {
+        for (int i = 0; i < FEATURES; i++) {
+            double s = b[i];
+            for (int k = 0; k < i; k++) s -= chol[i * FEATURES + k] * w[k];
+            w[i] = s / chol[i * FEATURES + i];
+        }
+        for (int i = FEATURES - 1; i >= 0; i--) {
+            double s = w[i];
+            for (int k = i + 1; k < FEATURES; k++) s -= chol[k * FEATURES + i] * w[k];
+            w[i] = s / chol[i * FEATURES + i];
+        }
+    }
+
+    // dot(w, features(day, trend, target)) without a buffer, so readers can run concurrently
+    private static double dot(double[] w, EnergyEntry day, double trend, LocalDate target) {
+        double s = w[0]
+                + w[1] * (day.getSleepHours() / 10.0)
+                + w[2] * (day.getCaffeine() / 5.0)
+                + w[3] * (day.getMood() / 5.0)
+                + w[4] * (day.getProductivity() / 5.0)
+                + w[5] * (day.getEnergyScore() / 50.0)
+                + w[6] * (trend / 50.0);
+        int type = workType(day.getWorkType());
+        if (type >= 0) s += w[7 + type];
+        int dow = target.getDayOfWeek().getValue(); // Monday = 1
+        if (dow != DayOfWeek.SUNDAY.getValue()) s += w[9 + dow];
+        return s;
+    }
+
+    // inputs roughly scaled to [0, 1] so one RIDGE penalty suits every weight
+    private static void features(double[] x, EnergyEntry day, double trend, LocalDate target) {
+        Arrays.fill(x, 0);
+        x[0] = 1;
+        x[1] = day.getSleepHours() / 10.0;
+        x[2] = day.getCaffeine() / 5.0;
+        x[3] = day.getMood() / 5.0;
+        x[4] = day.getProductivity() / 5.0;
+        x[5] = day.getEnergyScore() / 50.0;
+        x[6] = trend / 50.0;
+        int type = workType(day.getWorkType());
+        if (type >= 0) x[7 + type] = 1;
+        int dow = target.getDayOfWeek().getValue();
+        if (dow != DayOfWeek.SUNDAY.getValue()) x[9 + dow] = 1;
+    }
+
+    // 0 Study, 1 Creative, 2 Physical, -1 anything else
+    private static int workType(String t) {
+        if (t.equalsIgnoreCase("Study")) return 0;
+        if (t.equalsIgnoreCase("Creative")) return 1;
+        if (t.equalsIgnoreCase("Physical")) return 2;
+        return -1;
+    }
+
+    private void save() {
+        System.arraycopy(a, 0, savedA, 0, a.length);
+        System.arraycopy(energyTarget, 0, savedEnergyTarget, 0, FEATURES);
+        System.arraycopy(moodTarget, 0, savedMoodTarget, 0, FEATURES);
+        System.arraycopy(energyWeights, 0, savedEnergy, 0, FEATURES);
+        System.arraycopy(moodWeights, 0, savedMood, 0, FEATURES);
+        savedLatest = latest;
+        savedTrend = trend;
+        savedSamples = samples;
+    }
+
+    private void restore() {
+        System.arraycopy(savedA, 0, a, 0, a.length);
+        System.arraycopy(savedEnergyTarget, 0, energyTarget, 0, FEATURES);
+        System.arraycopy(savedMoodTarget, 0, moodTarget, 0, FEATURES);
+        System.arraycopy(savedEnergy, 0, energyWeights, 0, FEATURES);
+        System.arraycopy(savedMood, 0, moodWeights, 0, FEATURES);
+        latest = savedLatest;
+        trend = savedTrend;
+        samples = savedSamples;
+    }
+}
@@ -0,0 +1,62 @@
+import java.time.LocalDate;
+import java.util.*;
+
+// Entries kept sorted by date, one per day, keyed by epoch-day.
+// Upsert and point lookup are O(log n); range and "last n" reads are O(log n + k).
+public class EnergyIndex {
+    private final TreeMap<Long, EnergyEntry> byDay = new TreeMap<>();
+
+    // Insert or replace the entry for its date; returns the replaced entry or null.
+    public EnergyEntry upsert(EnergyEntry e) {
+        return byDay.put(e.getDate().toEpochDay(), e);
+    }
+
+    public EnergyEntry get(LocalDate date) {
+        return byDay.get(date.toEpochDay());
+    }
+
+    public EnergyEntry first() {
+        return byDay.isEmpty() ? null : byDay.firstEntry().getValue();
+    }
+
+    public EnergyEntry last() {
+        return byDay.isEmpty() ? null : byDay.lastEntry().getValue();
+    }
+
+    public int size() {
+        return byDay.size();
+    }
+
+    public boolean isEmpty() {
+        return byDay.isEmpty();
+    }
+
+    public void clear() {
+        byDay.clear();
+    }
+
+    // live view, oldest first
+    public Collection<EnergyEntry> values() {
+        return Collections.unmodifiableCollection(byDay.values());
+    }
+
+    // live view, newest first
+    public Collection<EnergyEntry> descending() {
+        return Collections.unmodifiableCollection(byDay.descendingMap().values());
+    }
+
+    // entries with from <= date <= to, oldest first
+    public List<EnergyEntry> range(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) return new ArrayList<>();
+        return new ArrayList<>(byDay.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values());
+    }
+
+    // the most recent n entries, oldest first
+    public List<EnergyEntry> lastN(int n) {
+        int k = Math.max(0, Math.min(n, byDay.size()));
+        EnergyEntry[] out = new EnergyEntry[k];
+        Iterator<EnergyEntry> it = byDay.descendingMap().values().iterator();
+        for (int i = k - 1; i >= 0; i--) out[i] = it.next();
+        return Arrays.asList(out);
+    }
+}
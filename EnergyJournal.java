@@ -0,0 +1,83 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+// Append-only log of upserts kept next to the CSV snapshot.
+// Each record is one CSV line; replaying the log on top of the snapshot gives
+// the current state, and compaction folds it back into the snapshot.
+public class EnergyJournal implements Closeable {
+    private final Path path;
+    private final int groupSize; // fsync once per this many appends
+    private FileChannel channel;
+    private int pendingSync;
+    private int records;
+
+    public EnergyJournal(String filename, int groupSize) throws IOException {
+        this.path = Paths.get(filename);
+        this.groupSize = Math.max(1, groupSize);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Feed every complete record to the sink, oldest first.
+    // A trailing record without its newline was torn by a crash and is dropped.
+    public void replay(Consumer<EnergyEntry> sink, EnergyCsvParser.ErrorHandler errors) throws IOException {
+        long size = channel.size();
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        channel.read(buf, 0);
+        int lastComplete = (int) size;
+        while (lastComplete > 0 && buf.get(lastComplete - 1) != '\n') lastComplete--;
+        records = new EnergyCsvParser().parse(buf.array(), 0, lastComplete, 1,
+                (line, day, s, m, p, c, wt, pt, score) ->
+                        sink.accept(EnergyEntry.of(LocalDate.ofEpochDay(day), s, m, p, c, wt, pt, score)),
+                errors);
+        if (lastComplete < size) channel.truncate(lastComplete);
+        channel.position(lastComplete);
+    }
+
+    public void append(EnergyEntry e) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap((e.toCSV() + "\n").getBytes(StandardCharsets.UTF_8));
+        EnergyMetrics.BYTES_PERSISTED.add(buf.remaining());
+        while (buf.hasRemaining()) channel.write(buf);
+        records++;
+        if (++pendingSync >= groupSize) sync();
+    }
+
+    public void sync() throws IOException {
+        if (pendingSync == 0) return;
+        long t0 = System.nanoTime();
+        channel.force(false);
+        EnergyMetrics.FSYNC.record(System.nanoTime() - t0);
+        pendingSync = 0;
+    }
+
+    // Drop all records; called once they are safely in the snapshot.
+    public void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+        pendingSync = 0;
+        records = 0;
+    }
+
+    public int size() {
+        return records;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Closed-loop load generator for EnergyServer.
+// Each client thread sends a request, waits for the answer and sends the next:
+// mostly dashboard/prediction reads, some single and batched upserts, spread
+// over a set of users. Reports throughput and latency percentiles.
+//
+// Usage: java EnergyLoadTest [clients] [seconds] [users] [baseUrl]
+//        default: 1000 clients, 20 s, 100 users, in-process server on a temp directory
+public class EnergyLoadTest {
+    private static final int WRITE_PERCENT = 10;
+    private static final int BATCH_SIZE = 30;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        EnergyServer local = null;
+        String base;
+        if (args.length > 3) {
+            base = args[3];
+        } else {
+            Path dir = Files.createTempDirectory("energy-load");
+            local = new EnergyServer(0, new TrackerRegistry(dir, 256L * 1024 * 1024));
+            local.start();
+            base = "http://localhost:" + local.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(4))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        // give every user some history first
+        for (int u = 0; u < users; u++) {
+            send(client, post(base, u, batch(LocalDate.of(2024, 1, 1), BATCH_SIZE, u)));
+        }
+
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        AtomicInteger errors = new AtomicInteger();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            final int id = c;
+            Thread t = new Thread(() -> {
+                SplittableRandom rnd = new SplittableRandom(id);
+                long[] lat = new long[1024];
+                int n = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest req = nextRequest(base, rnd, users);
+                        long start = System.nanoTime();
+                        if (!send(client, req)) errors.incrementAndGet();
+                        if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                        lat[n++] = System.nanoTime() - start;
+                    }
+                } finally {
+                    latencies[id] = lat;
+                    counts[id] = n;
+                    done.countDown();
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+        done.await();
+
+        int total = 0;
+        for (int n : counts) total += n;
+        long[] all = new long[total];
+        int k = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, k, counts[c]);
+            k += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("clients=%d users=%d requests=%d errors=%d throughput=%.0f req/s%n",
+                clients, users, total, errors.get(), total / (double) seconds);
+        System.out.printf("latency ms: p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                total == 0 ? 0 : all[total - 1] / 1e6);
+
+        if (local != null) local.stop(0);
+        System.exit(0);
+    }
+
+    private static HttpRequest nextRequest(String base, SplittableRandom rnd, int users) {
+        int user = rnd.nextInt(users);
+        int roll = rnd.nextInt(100);
+        if (roll < WRITE_PERCENT) {
+            LocalDate day = LocalDate.of(2024, 1, 1).plusDays(rnd.nextInt(400));
+            int rows = rnd.nextInt(4) == 0 ? BATCH_SIZE : 1;
+            return post(base, user, batch(day, rows, rnd.nextInt()));
+        }
+        String path = roll < 60 ? "dashboard" : roll < 85 ? "prediction" : roll < 95 ? "graph?days=7" : "entries?from=2024-01-01&to=2024-01-31";
+        return HttpRequest.newBuilder(URI.create(base + "/users/u" + user + "/" + path)).GET().build();
+    }
+
+    private static HttpRequest post(String base, int user, String body) {
+        return HttpRequest.newBuilder(URI.create(base + "/users/u" + user + "/entries"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static String batch(LocalDate start, int rows, int seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            EnergyEntry e = new EnergyEntry(start.plusDays(i), 4 + rnd.nextInt(6), 1 + rnd.nextInt(5),
+                    1 + rnd.nextInt(5), rnd.nextInt(5), "Mixed", "MAN".substring(i % 3, i % 3 + 1));
+            sb.append(e.toCSV()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static boolean send(HttpClient client, HttpRequest req) {
+        try {
+            return client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and latency histograms for tracker I/O and analytics.
+// Recording is a few lock-free increments; callers time with System.nanoTime().
+// Only work that takes microseconds is timed: O(1) reads such as predictTomorrow,
+// and reports served from ResultCache, would cost more to time than to run
+// (the cache keeps its own hit/miss counts).
+public class EnergyMetrics {
+    // I/O
+    public static final LatencyHistogram LOAD = new LatencyHistogram("load");
+    public static final LatencyHistogram SAVE = new LatencyHistogram("save");
+    public static final LatencyHistogram FSYNC = new LatencyHistogram("fsync");
+    public static final LatencyHistogram ADD_ENTRY = new LatencyHistogram("addEntry");
+    public static final LatencyHistogram ADD_ALL = new LatencyHistogram("addAll");
+    public static final LongAdder ROWS_LOADED = new LongAdder();
+    public static final LongAdder ROWS_SKIPPED = new LongAdder();
+    public static final LongAdder BYTES_PERSISTED = new LongAdder();
+    public static final LongAdder IO_ERRORS = new LongAdder();
+
+    // analytics: report rendering on cache misses, full-history scans
+    public static final LatencyHistogram DASHBOARD = new LatencyHistogram("summaryDashboard");
+    public static final LatencyHistogram WEEKLY = new LatencyHistogram("weeklyInsights");
+    public static final LatencyHistogram GRAPH = new LatencyHistogram("asciiGraph");
+    public static final LatencyHistogram EXTREMES = new LatencyHistogram("highest/lowestEnergy");
+    public static final LatencyHistogram CRASH_SWEEP = new LatencyHistogram("crashSweep"); // CrashMonitor, per pass
+    public static final LatencyHistogram SIMULATE = new LatencyHistogram("simulate"); // EnergySimulator, per run
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            LOAD, SAVE, FSYNC, ADD_ENTRY, ADD_ALL, DASHBOARD, WEEKLY, GRAPH, EXTREMES, CRASH_SWEEP, SIMULATE
+    };
+
+    private static ScheduledExecutorService logger;
+
+    // One line with the counters and every histogram that has data.
+    public static String summary() {
+        StringBuilder sb = new StringBuilder("metrics:");
+        sb.append(" rowsLoaded=").append(ROWS_LOADED.sum());
+        sb.append(" rowsSkipped=").append(ROWS_SKIPPED.sum());
+        sb.append(" bytesPersisted=").append(BYTES_PERSISTED.sum());
+        sb.append(" ioErrors=").append(IO_ERRORS.sum());
+        for (LatencyHistogram h : HISTOGRAMS) {
+            if (h.count() > 0) sb.append(" | ").append(h.summary());
+        }
+        sb.append(" | ").append(ResultCache.SHARED);
+        return sb.toString();
+    }
+
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"rowsLoaded\":").append(ROWS_LOADED.sum());
+        sb.append(",\"rowsSkipped\":").append(ROWS_SKIPPED.sum());
+        sb.append(",\"bytesPersisted\":").append(BYTES_PERSISTED.sum());
+        sb.append(",\"ioErrors\":").append(IO_ERRORS.sum());
+        ResultCache cache = ResultCache.SHARED;
+        sb.append(",\"cache\":{\"size\":").append(cache.size())
+                .append(",\"hits\":").append(cache.hits())
+                .append(",\"misses\":").append(cache.misses())
+                .append(",\"evictions\":").append(cache.evictions()).append('}');
+        sb.append(",\"latencyNanos\":{");
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            LatencyHistogram h = HISTOGRAMS[i];
+            if (i > 0) sb.append(',');
+            sb.append('"').append(h.getName()).append("\":{\"count\":").append(h.count())
+                    .append(",\"mean\":").append(Math.round(h.mean()))
+                    .append(",\"p50\":").append(h.percentile(50))
+                    .append(",\"p90\":").append(h.percentile(90))
+                    .append(",\"p99\":").append(h.percentile(99))
+                    .append(",\"p999\":").append(h.percentile(99.9))
+                    .append(",\"max\":").append(h.max()).append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    // Print summary() every `seconds` on a daemon thread; calling again changes the period, 0 stops it.
+    public static synchronized void startPeriodicLog(long seconds) {
+        stopPeriodicLog();
+        if (seconds <= 0) return;
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "energy-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        logger.scheduleAtFixedRate(() -> System.out.println(summary()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopPeriodicLog() {
+        if (logger != null) logger.shutdownNow();
+        logger = null;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram h : HISTOGRAMS) h.reset();
+        ROWS_LOADED.reset();
+        ROWS_SKIPPED.reset();
+        BYTES_PERSISTED.reset();
+        IO_ERRORS.reset();
+    }
+}
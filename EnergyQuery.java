@@ -0,0 +1,251 @@
+import java.time.LocalDate;
+import java.util.*;
+
+// Filter, group-by and top-k queries over one tracker's history
+// (EnergyTracker.query()). Filters evaluate to bitmaps of matching rows by
+// AND/OR over EnergyBitmaps, group-by counts are bitmap intersections, and
+// top-k picks rows by quickselect on the score column, sorting only the k
+// results. Valid until the tracker's next change, like getColumns().
+public class EnergyQuery {
+    public enum Field {
+        WORK_TYPE("workType"), PEAK_TIME("peakTime"), CAFFEINE("caffeine"),
+        MOOD("mood"), PRODUCTIVITY("productivity"), ENERGY_CLASS("class");
+
+        private final String name;
+
+        Field(String name) {
+            this.name = name;
+        }
+
+        String of(EnergyEntry e) {
+            switch (this) {
+                case WORK_TYPE: return e.getWorkType();
+                case PEAK_TIME: return e.getPeakTime();
+                case CAFFEINE: return Integer.toString(e.getCaffeine());
+                case MOOD: return Integer.toString(e.getMood());
+                case PRODUCTIVITY: return Integer.toString(e.getProductivity());
+                default: return EnergyTracker.energyClass(e.getEnergyScore());
+            }
+        }
+
+        boolean isNumeric() {
+            return this == CAFFEINE || this == MOOD || this == PRODUCTIVITY;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        // "workType", "peakTime", "caffeine", "mood", "productivity" or "class"
+        public static Field parse(String s) {
+            for (Field f : values()) if (f.name.equalsIgnoreCase(s)) return f;
+            throw new IllegalArgumentException("unknown field: " + s);
+        }
+    }
+
+    // A set of rows; rows() returns a bitmap the caller may modify.
+    public interface Filter {
+        BitSet rows(EnergyQuery q);
+    }
+
+    private final EnergyColumns columns;
+    private final EnergyBitmaps index;
+
+    EnergyQuery(EnergyColumns columns, EnergyBitmaps index) {
+        this.columns = columns;
+        this.index = index;
+    }
+
+    public static Filter all() {
+        return q -> {
+            BitSet b = new BitSet(q.columns.size());
+            b.set(0, q.columns.size());
+            return b;
+        };
+    }
+
+    // field is any of `values`
+    public static Filter eq(Field field, String... values) {
+        return q -> {
+            BitSet b = new BitSet();
+            for (String v : values) b.or(q.index.rowsWith(field, v));
+            return b;
+        };
+    }
+
+    public static Filter atLeast(Field field, int min) {
+        return between(field, min, Integer.MAX_VALUE);
+    }
+
+    public static Filter atMost(Field field, int max) {
+        return between(field, Integer.MIN_VALUE, max);
+    }
+
+    // min <= field <= max, for caffeine, mood and productivity
+    public static Filter between(Field field, int min, int max) {
+        if (!field.isNumeric()) throw new IllegalArgumentException(field + " is not numeric");
+        return q -> {
+            BitSet b = new BitSet();
+            for (String v : q.index.values(field)) {
+                int n = Integer.parseInt(v);
+                if (n >= min && n <= max) b.or(q.index.rowsWith(field, v));
+            }
+            return b;
+        };
+    }
+
+    public static Filter and(Filter... filters) {
+        return q -> {
+            BitSet b = filters.length == 0 ? all().rows(q) : filters[0].rows(q);
+            for (int i = 1; i < filters.length && !b.isEmpty(); i++) b.and(filters[i].rows(q));
+            return b;
+        };
+    }
+
+    public static Filter or(Filter... filters) {
+        return q -> {
+            BitSet b = new BitSet();
+            for (Filter f : filters) b.or(f.rows(q));
+            return b;
+        };
+    }
+
+    public static Filter not(Filter filter) {
+        return q -> {
+            BitSet b = filter.rows(q);
+            b.flip(0, q.columns.size());
+            return b;
+        };
+    }
+
+    // rows dated on or after `from`
+    public static Filter since(LocalDate from) {
+        return q -> {
+            BitSet b = new BitSet();
+            int day = (int) from.toEpochDay();
+            int lo = 0, hi = q.columns.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (q.columns.epochDay(mid) < day) lo = mid + 1;
+                else hi = mid;
+            }
+            b.set(lo, q.columns.size());
+            return b;
+        };
+    }
+
+    // the k highest-scoring days (ties: older first; NaN scores last)
+    public static Filter topScores(int k) {
+        return q -> {
+            BitSet b = new BitSet();
+            int[] rows = q.selectTop(all().rows(q), k);
+            for (int i = 0; i < k && i < rows.length; i++) b.set(rows[i]);
+            return b;
+        };
+    }
+
+    // "caffeine>=3", "mood<=2", "workType=Study,Creative", "class=High"
+    public static Filter parse(String expr) {
+        int op = expr.indexOf(">=");
+        if (op < 0) op = expr.indexOf("<=");
+        if (op > 0) {
+            Field f = Field.parse(expr.substring(0, op).trim());
+            int bound = Integer.parseInt(expr.substring(op + 2).trim());
+            return expr.charAt(op) == '>' ? atLeast(f, bound) : atMost(f, bound);
+        }
+        op = expr.indexOf('=');
+        if (op <= 0) throw new IllegalArgumentException("expected field=value, field>=n or field<=n: " + expr);
+        return eq(Field.parse(expr.substring(0, op).trim()), expr.substring(op + 1).trim().split(","));
+    }
+
+    public int count(Filter filter) {
+        return filter.rows(this).cardinality();
+    }
+
+    // matching entries, oldest first
+    public List<EnergyEntry> select(Filter filter) {
+        BitSet rows = filter.rows(this);
+        List<EnergyEntry> out = new ArrayList<>(rows.cardinality());
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) out.add(columns.toEntry(row));
+        return out;
+    }
+
+    // matching rows per value of `field`, most common first (ties by value)
+    public Map<String, Integer> groupBy(Field field, Filter filter) {
+        BitSet rows = filter.rows(this);
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (String v : index.values(field)) {
+            BitSet b = (BitSet) index.rowsWith(field, v).clone();
+            b.and(rows);
+            int n = b.cardinality();
+            if (n > 0) counts.add(new AbstractMap.SimpleImmutableEntry<>(v, n));
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> c : counts) out.put(c.getKey(), c.getValue());
+        return out;
+    }
+
+    // the k highest-scoring matching entries, best first (ties: older first; NaN scores last)
+    public List<EnergyEntry> top(Filter filter, int k) {
+        List<EnergyEntry> out = new ArrayList<>();
+        for (int row : topRows(filter.rows(this), k)) out.add(columns.toEntry(row));
+        return out;
+    }
+
+    // the best k of `candidates`, best first
+    private int[] topRows(BitSet candidates, int k) {
+        int[] rows = selectTop(candidates, k);
+        k = Math.max(0, Math.min(k, rows.length));
+        Integer[] best = new Integer[k];
+        for (int i = 0; i < k; i++) best[i] = rows[i];
+        Arrays.sort(best, this::compare);
+        int[] out = new int[k];
+        for (int i = 0; i < k; i++) out[i] = best[i];
+        return out;
+    }
+
+    // The candidate rows with the best k moved to the front, unordered (quickselect).
+    private int[] selectTop(BitSet candidates, int k) {
+        int[] rows = candidates.stream().toArray();
+        int lo = 0, hi = rows.length - 1;
+        while (lo < hi && k > 0 && k < rows.length) {
+            int p = partition(rows, lo, hi);
+            if (p == k - 1 || p == k) break;
+            if (p < k) lo = p + 1;
+            else hi = p - 1;
+        }
+        return rows;
+    }
+
+    // Lomuto around the middle row; returns the pivot's final index. Rows are
+    // distinct and compare() is a total order on them, so there are no ties to degrade on.
+    private int partition(int[] rows, int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        swap(rows, mid, hi);
+        int pivot = rows[hi];
+        int store = lo;
+        for (int i = lo; i < hi; i++) {
+            if (compare(rows[i], pivot) < 0) swap(rows, i, store++);
+        }
+        swap(rows, store, hi);
+        return store;
+    }
+
+    // Higher score first, NaN scores last, then the older row (rows are in date
+    // order); never 0 for distinct rows.
+    private int compare(int a, int b) {
+        double sa = columns.score(a), sb = columns.score(b);
+        boolean nanA = Double.isNaN(sa), nanB = Double.isNaN(sb);
+        if (nanA != nanB) return nanA ? 1 : -1;
+        int c = nanA ? 0 : Double.compare(sb, sa);
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
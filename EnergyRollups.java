@@ -0,0 +1,200 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+// Weekly, monthly and yearly rollups of the history: per calendar bucket the
+// count and min/max/mean of score, sleep, mood and caffeine. EnergyAggregates
+// keeps them current on every upsert, so long-range views read a few hundred
+// buckets instead of every day.
+public class EnergyRollups {
+    public enum Metric {
+        SCORE, SLEEP, MOOD, CAFFEINE;
+
+        double of(EnergyEntry e) {
+            switch (this) {
+                case SCORE: return e.getEnergyScore();
+                case SLEEP: return e.getSleepHours();
+                case MOOD: return e.getMood();
+                default: return e.getCaffeine();
+            }
+        }
+    }
+
+    // DAY is one bucket per entry and is not stored; the tracker builds it from the index.
+    public enum Tier {
+        DAY, WEEK, MONTH, YEAR;
+
+        // first day of the bucket holding `d` (weeks start on Monday)
+        public LocalDate start(LocalDate d) {
+            switch (this) {
+                case WEEK: return d.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH: return d.withDayOfMonth(1);
+                case YEAR: return d.withDayOfYear(1);
+                default: return d;
+            }
+        }
+
+        // last day of the bucket starting at `start`
+        public LocalDate end(LocalDate start) {
+            switch (this) {
+                case WEEK: return start.plusDays(6);
+                case MONTH: return start.plusMonths(1).minusDays(1);
+                case YEAR: return start.plusYears(1).minusDays(1);
+                default: return start;
+            }
+        }
+
+        String label(LocalDate start) {
+            switch (this) {
+                case MONTH: return start.toString().substring(0, start.toString().length() - 3);
+                case YEAR: return Integer.toString(start.getYear());
+                default: return start.toString();
+            }
+        }
+    }
+
+    // coarsest first
+    static final Tier[] STORED = {Tier.YEAR, Tier.MONTH, Tier.WEEK};
+    private static final int METRICS = Metric.values().length;
+
+    public static final class Bucket {
+        private final Tier tier;
+        private final LocalDate start;
+        private int count;
+        private final double[] min = new double[METRICS];
+        private final double[] max = new double[METRICS];
+        private final double[] sum = new double[METRICS];
+
+        Bucket(Tier tier, LocalDate start) {
+            this.tier = tier;
+            this.start = start;
+        }
+
+        // a DAY bucket
+        static Bucket of(EnergyEntry e) {
+            Bucket b = new Bucket(Tier.DAY, e.getDate());
+            b.add(e);
+            return b;
+        }
+
+        void add(EnergyEntry e) {
+            for (Metric m : Metric.values()) {
+                double v = m.of(e);
+                int i = m.ordinal();
+                min[i] = count == 0 ? v : Math.min(min[i], v);
+                max[i] = count == 0 ? v : Math.max(max[i], v);
+                sum[i] += v;
+            }
+            count++;
+        }
+
+        // only valid when e is not one of the extremes (see holdsExtreme)
+        private void remove(EnergyEntry e) {
+            for (Metric m : Metric.values()) sum[m.ordinal()] -= m.of(e);
+            count--;
+        }
+
+        // also true for a NaN value: it made min, max and sum NaN, and only a
+        // recompute clears them once the day is replaced
+        private boolean holdsExtreme(EnergyEntry e) {
+            for (Metric m : Metric.values()) {
+                double v = m.of(e);
+                if (same(v, min[m.ordinal()]) || same(v, max[m.ordinal()])) return true;
+            }
+            return false;
+        }
+
+        // == that also matches NaN with NaN
+        private static boolean same(double a, double b) {
+            return a == b || Double.compare(a, b) == 0;
+        }
+
+        private void recompute(Collection<EnergyEntry> days) {
+            count = 0;
+            Arrays.fill(sum, 0);
+            for (EnergyEntry e : days) add(e);
+        }
+
+        private Bucket copy() {
+            Bucket b = new Bucket(tier, start);
+            b.count = count;
+            System.arraycopy(min, 0, b.min, 0, METRICS);
+            System.arraycopy(max, 0, b.max, 0, METRICS);
+            System.arraycopy(sum, 0, b.sum, 0, METRICS);
+            return b;
+        }
+
+        public Tier tier() { return tier; }
+        public LocalDate start() { return start; }
+        public LocalDate end() { return tier.end(start); }
+        public int count() { return count; }
+        public double min(Metric m) { return min[m.ordinal()]; }
+        public double max(Metric m) { return max[m.ordinal()]; }
+        public double mean(Metric m) { return count == 0 ? 0.0 : sum[m.ordinal()] / count; }
+        public String label() { return tier.label(start); }
+
+        @Override
+        public String toString() {
+            return label() + " n=" + count + String.format(" score=%.2f [%.0f-%.0f]", mean(Metric.SCORE),
+                    min(Metric.SCORE), max(Metric.SCORE));
+        }
+    }
+
+    // per tier, buckets by epoch day of their first day
+    private final EnumMap<Tier, TreeMap<Long, Bucket>> tiers = new EnumMap<>(Tier.class);
+
+    public EnergyRollups() {
+        for (Tier t : STORED) tiers.put(t, new TreeMap<>());
+    }
+
+    public void rebuild(EnergyIndex index) {
+        for (Tier t : STORED) {
+            TreeMap<Long, Bucket> buckets = tiers.get(t);
+            buckets.clear();
+            Bucket current = null;
+            for (EnergyEntry e : index.values()) { // date order: one map insert per bucket
+                if (current == null || e.getDate().isAfter(current.end())) {
+                    current = new Bucket(t, t.start(e.getDate()));
+                    buckets.put(current.start.toEpochDay(), current);
+                }
+                current.add(e);
+            }
+        }
+    }
+
+    // `added` has just been upserted into `index`, replacing `replaced` (may be null).
+    public void update(EnergyEntry added, EnergyEntry replaced, EnergyIndex index) {
+        for (Tier t : STORED) {
+            LocalDate start = t.start(added.getDate());
+            Bucket b = tiers.get(t).computeIfAbsent(start.toEpochDay(), k -> new Bucket(t, start));
+            if (replaced == null) {
+                b.add(added);
+            } else if (b.holdsExtreme(replaced)) {
+                b.recompute(index.range(start, b.end())); // at most a year of days
+            } else {
+                b.remove(replaced);
+                b.add(added);
+            }
+        }
+    }
+
+    // copies of the `tier` buckets overlapping from..to, oldest first
+    public List<Bucket> buckets(Tier tier, LocalDate from, LocalDate to) {
+        List<Bucket> out = new ArrayList<>();
+        for (Bucket b : range(tier, from, to).values()) out.add(b.copy());
+        return out;
+    }
+
+    // number of `tier` buckets overlapping from..to
+    public int count(Tier tier, LocalDate from, LocalDate to) {
+        return range(tier, from, to).size();
+    }
+
+    private NavigableMap<Long, Bucket> range(Tier tier, LocalDate from, LocalDate to) {
+        TreeMap<Long, Bucket> buckets = tiers.get(tier);
+        if (buckets == null) throw new IllegalArgumentException("no stored rollup for " + tier);
+        if (from.isAfter(to)) return Collections.emptyNavigableMap();
+        return buckets.subMap(tier.start(from).toEpochDay(), true, to.toEpochDay(), true);
+    }
+}
@@ -0,0 +1,365 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Local HTTP API over a TrackerRegistry, one tracker per user:
+//
+//   POST /users/{id}/entries                  body: one or more CSV rows, upserted in order
+//   GET  /users/{id}/entries?from=&to=        entries in a date range (ISO dates, inclusive) as JSON
+//   GET  /users/{id}/dashboard                the summaryDashboard figures as JSON
+//   GET  /users/{id}/prediction               tomorrow's energy and mood, crash alert
+//   GET  /users/{id}/graph?days=7             asciiGraph as plain text
+//   GET  /users/{id}/graph?from=&to=&width=60 rangeGraph: long ranges as rollup bars
+//   GET  /users/{id}/series?from=&to=&width=60 the same points as JSON (count, min/max/mean per metric)
+//   GET  /users/{id}/whatif?sleep=6&caffeine=4&days=7&n=&budget=&seed=
+//                                             EnergySimulator percentile bands per day as JSON
+//                                             (a fresh seed unless given; the reply echoes it)
+//                                             (n capped at 1,000,000, budget at 1000 ms)
+//   GET  /stats                               EnergyMetrics counters and latency percentiles
+//
+// Requests run one per virtual thread when the JDK has them (21+), otherwise on a
+// fixed pool; handlers only block on the user's shard lock and its journal.
+public class EnergyServer {
+    private static final int FALLBACK_THREADS = 64;
+    private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_WHATIF_TRAJECTORIES = 1_000_000;
+    private static final long MAX_WHATIF_BUDGET_MILLIS = 1000;
+
+    private final HttpServer server;
+    private final TrackerRegistry registry;
+    private final ExecutorService executor;
+
+    public EnergyServer(int port, TrackerRegistry registry) throws IOException {
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/users/", this::handle);
+        server.createContext("/stats", ex -> {
+            try {
+                sendJson(ex, 200, EnergyMetrics.toJson());
+            } finally {
+                ex.close();
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stop accepting requests, let running ones finish for up to delaySeconds, then flush every shard.
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        registry.close();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() only exists from JDK 21, so look it up at runtime.
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(FALLBACK_THREADS);
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            // /users/{id}/{resource}
+            String[] parts = ex.getRequestURI().getPath().split("/");
+            if (parts.length != 4) {
+                send(ex, 404, "text/plain", "Not found\n");
+                return;
+            }
+            String user = parts[2];
+            String resource = parts[3];
+            String method = ex.getRequestMethod();
+            Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+
+            if (resource.equals("entries") && method.equals("POST")) {
+                sendJson(ex, 200, upsert(user, readBody(ex)));
+            } else if (!method.equals("GET")) {
+                send(ex, 405, "text/plain", "Method not allowed\n");
+            } else if (resource.equals("entries")) {
+                LocalDate from = date(query.get("from"), LocalDate.MIN);
+                LocalDate to = date(query.get("to"), LocalDate.MAX);
+                sendJson(ex, 200, registry.read(user, t -> entriesJson(t.getRange(from, to))));
+            } else if (resource.equals("dashboard")) {
+                sendJson(ex, 200, registry.read(user, t -> t.cached("dashboard.json", 0, () -> dashboardJson(t))));
+            } else if (resource.equals("prediction")) {
+                sendJson(ex, 200, registry.read(user, t -> t.cached("prediction.json", 0, () -> predictionJson(t))));
+            } else if (resource.equals("graph") && (query.containsKey("from") || query.containsKey("to"))) {
+                LocalDate from = date(query.get("from"), LocalDate.MIN);
+                LocalDate to = date(query.get("to"), LocalDate.MAX);
+                int width = Integer.parseInt(query.getOrDefault("width", "60"));
+                send(ex, 200, "text/plain", registry.read(user, t -> t.rangeGraph(from, to, width)));
+            } else if (resource.equals("series")) {
+                LocalDate from = date(query.get("from"), LocalDate.MIN);
+                LocalDate to = date(query.get("to"), LocalDate.MAX);
+                int width = Integer.parseInt(query.getOrDefault("width", "60"));
+                sendJson(ex, 200, registry.read(user, t -> seriesJson(t.series(from, to, width))));
+            } else if (resource.equals("whatif")) {
+                String usual = String.valueOf(EnergySimulator.Scenario.AS_USUAL);
+                EnergySimulator.Scenario scenario = new EnergySimulator.Scenario(
+                        Integer.parseInt(query.getOrDefault("sleep", usual)),
+                        Integer.parseInt(query.getOrDefault("caffeine", usual)),
+                        Integer.parseInt(query.getOrDefault("days", "7")));
+                int n = Integer.parseInt(query.getOrDefault("n", String.valueOf(EnergySimulator.DEFAULT_TRAJECTORIES)));
+                long budget = Long.parseLong(query.getOrDefault("budget", String.valueOf(EnergySimulator.DEFAULT_BUDGET_MILLIS)));
+                if (n <= 0 || budget <= 0) throw new IllegalArgumentException("n and budget must be positive");
+                String given = query.get("seed");
+                long seed = given == null ? System.nanoTime() : Long.parseLong(given);
+                // runs share the common pool with imports and reports, so keep each one short
+                n = Math.min(n, MAX_WHATIF_TRAJECTORIES);
+                budget = Math.min(budget, MAX_WHATIF_BUDGET_MILLIS);
+                // the snapshot is taken under the read lock, the simulation runs after it is released
+                EnergySimulator sim = registry.read(user, EnergyTracker::simulator);
+                sendJson(ex, 200, whatIfJson(sim.run(scenario, n, budget, seed)));
+            } else if (resource.equals("graph")) {
+                int days = Integer.parseInt(query.getOrDefault("days", "7"));
+                send(ex, 200, "text/plain", registry.read(user, t -> t.asciiGraph(days)));
+            } else {
+                send(ex, 404, "text/plain", "Not found\n");
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            send(ex, 400, "text/plain", "Bad request: " + e.getMessage() + "\n");
+        } catch (RuntimeException e) {
+            System.out.println("Request failed: " + e);
+            send(ex, 500, "text/plain", "Internal error\n");
+        } finally {
+            ex.close();
+        }
+    }
+
+    // Parse everything first so a batch takes the user's write lock only once.
+    private String upsert(String user, String body) {
+        List<EnergyEntry> batch = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        int lineNo = 0;
+        for (String line : body.split("\r?\n")) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            try {
+                batch.add(EnergyEntry.fromCSV(line));
+            } catch (IllegalArgumentException e) {
+                rejected.add(lineNo + ": " + e.getMessage());
+            }
+        }
+        registry.write(user, t -> t.addAll(batch));
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"accepted\":").append(batch.size()).append(",\"rejected\":[");
+        for (int i = 0; i < rejected.size(); i++) {
+            if (i > 0) sb.append(',');
+            string(sb, rejected.get(i));
+        }
+        return sb.append("]}").toString();
+    }
+
+    static String dashboardJson(EnergyTracker t) {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"entries\":").append(t.size());
+        Optional<EnergyEntry> latest = t.getLast(1).stream().findFirst();
+        if (latest.isPresent()) {
+            EnergyEntry e = latest.get();
+            sb.append(",\"latest\":");
+            entry(sb, e);
+            sb.append(",\"energyClass\":");
+            string(sb, t.classifyEnergy(e.getEnergyScore()));
+            sb.append(",\"recommendedDeepWork\":");
+            string(sb, t.recommendDeepWorkTime());
+            sb.append(',');
+            prediction(sb, t);
+            sb.append(",\"sleepEnergyCorrelation\":");
+            number(sb, t.sleepEnergyCorrelation());
+            sb.append(",\"weekly\":{\"averageEnergy\":");
+            number(sb, t.weekAverageEnergy());
+            sb.append(",\"averageSleep\":");
+            number(sb, t.weekAverageSleep());
+            sb.append(",\"productivityTier\":");
+            string(sb, t.productivityTier());
+            sb.append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    static String predictionJson(EnergyTracker t) {
+        StringBuilder sb = new StringBuilder("{");
+        prediction(sb, t);
+        return sb.append('}').toString();
+    }
+
+    private static void prediction(StringBuilder sb, EnergyTracker t) {
+        double predicted = t.predictTomorrow();
+        sb.append("\"predictedEnergy\":");
+        number(sb, predicted);
+        sb.append(",\"predictedClass\":");
+        string(sb, t.classifyEnergy(predicted));
+        sb.append(",\"predictedMood\":").append(t.predictMood());
+        sb.append(",\"crashAlert\":").append(t.isCrashing());
+    }
+
+    static String entriesJson(List<EnergyEntry> list) {
+        StringBuilder sb = new StringBuilder(list.size() * 160 + 2).append('[');
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) sb.append(',');
+            entry(sb, list.get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    static String seriesJson(List<EnergyRollups.Bucket> points) {
+        StringBuilder sb = new StringBuilder(points.size() * 256 + 2).append('[');
+        for (int i = 0; i < points.size(); i++) {
+            EnergyRollups.Bucket b = points.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"start\":\"").append(b.start()).append("\",\"end\":\"").append(b.end())
+                    .append("\",\"count\":").append(b.count());
+            for (EnergyRollups.Metric m : EnergyRollups.Metric.values()) {
+                sb.append(",\"").append(m.name().toLowerCase()).append("\":{\"mean\":");
+                number(sb, b.mean(m));
+                sb.append(",\"min\":");
+                number(sb, b.min(m));
+                sb.append(",\"max\":");
+                number(sb, b.max(m));
+                sb.append('}');
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    static String whatIfJson(EnergySimulator.Result r) {
+        StringBuilder sb = new StringBuilder(r.days() * 200 + 128);
+        sb.append("{\"trajectories\":").append(r.trajectories());
+        sb.append(",\"seed\":").append(r.seed());
+        sb.append(",\"truncated\":").append(r.truncated());
+        sb.append(",\"crashProbability\":");
+        number(sb, r.crashProbability());
+        sb.append(",\"days\":[");
+        for (int d = 0; d < r.days(); d++) {
+            if (d > 0) sb.append(',');
+            sb.append("{\"date\":\"").append(r.date(d)).append("\",\"energy\":{");
+            double[] qs = {0.1, 0.25, 0.5, 0.75, 0.9};
+            for (int i = 0; i < qs.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("\"p").append(Math.round(qs[i] * 100)).append("\":");
+                number(sb, r.energyPercentile(d, qs[i]));
+            }
+            sb.append("},\"mood\":{\"p10\":").append(r.moodPercentile(d, 0.1));
+            sb.append(",\"p50\":").append(r.moodPercentile(d, 0.5));
+            sb.append(",\"p90\":").append(r.moodPercentile(d, 0.9));
+            sb.append(",\"mean\":");
+            number(sb, r.meanMood(d));
+            sb.append("},\"crashProbability\":");
+            number(sb, r.crashProbability(d));
+            sb.append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void entry(StringBuilder sb, EnergyEntry e) {
+        sb.append("{\"date\":\"").append(e.getDate()).append('"');
+        sb.append(",\"sleep\":").append(e.getSleepHours());
+        sb.append(",\"mood\":").append(e.getMood());
+        sb.append(",\"productivity\":").append(e.getProductivity());
+        sb.append(",\"caffeine\":").append(e.getCaffeine());
+        sb.append(",\"workType\":");
+        string(sb, e.getWorkType());
+        sb.append(",\"peakTime\":");
+        string(sb, e.getPeakTime());
+        sb.append(",\"energyScore\":");
+        number(sb, e.getEnergyScore());
+        sb.append('}');
+    }
+
+    // JSON has no NaN or Infinity
+    private static void number(StringBuilder sb, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) sb.append("null");
+        else sb.append(v);
+    }
+
+    private static void string(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static LocalDate date(String s, LocalDate missing) {
+        return s == null || s.isEmpty() ? missing : LocalDate.parse(s);
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> map = new HashMap<>();
+        if (raw == null) return map;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            map.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    private static String readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) throw new IllegalArgumentException("body too large");
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void sendJson(HttpExchange ex, int status, String body) throws IOException {
+        send(ex, status, "application/json", body);
+    }
+
+    private static void send(HttpExchange ex, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // java EnergyServer [port] [dataDir] [memoryBudgetMB]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Path dir = Path.of(args.length > 1 ? args[1] : "users");
+        long budget = (args.length > 2 ? Long.parseLong(args[2]) : 256) * 1024 * 1024;
+        java.nio.file.Files.createDirectories(dir);
+        TrackerRegistry registry = new TrackerRegistry(dir, budget);
+        EnergyServer server = new EnergyServer(port, registry);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        server.start();
+        EnergyMetrics.startPeriodicLog(Long.getLong("energy.metrics.interval", 60));
+        // crash alerts for the loaded users go to the log every energy.crash.interval seconds
+        // (like energy.metrics.interval); 0 turns the sweep off
+        long crashSeconds = Long.getLong("energy.crash.interval", 10);
+        if (crashSeconds > 0) new CrashMonitor(registry, CrashAlertSink.LOG).start(crashSeconds * 1000);
+        System.out.println("Energy API listening on port " + server.getPort() + ", data in " + dir.toAbsolutePath());
+    }
+}
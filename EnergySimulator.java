@@ -0,0 +1,366 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Monte Carlo "what if" runs over one user's recent history (EnergyTracker.simulator()).
+// Mood and productivity follow small per-user regressions on the day's sleep and
+// caffeine and on yesterday's values; every simulated day adds the residuals of one
+// real day drawn at random (a joint bootstrap, so the residuals keep their
+// correlation), is scored with LinearScoringModel.DEFAULT plus that day's score
+// residual, and is fed to a copy of the user's CrashDetector. Plan values left
+// "as usual" are taken from the same drawn day.
+//
+// Trajectories are split into CHUNKS fork-join tasks, each with its own
+// SplittableRandom split off one seeded root in order, so a run that finishes
+// within its budget gives the same result on any number of cores. Each task
+// keeps fixed-size histograms per day, merged at the end, so memory does not grow
+// with the trajectory count. A snapshot is immutable and can run outside the
+// tracker's locks.
+public class EnergySimulator {
+    public static final int HISTORY_DAYS = 365;      // newest days the models learn from
+    static final int MIN_HISTORY = 8;
+    public static final int MAX_DAYS = 90;
+    public static final int DEFAULT_TRAJECTORIES = 200_000;
+    public static final long DEFAULT_BUDGET_MILLIS = 250;
+    static final int CHUNKS = 64;                    // tasks per run, independent of the core count
+    private static final int DEADLINE_CHECK = 256;   // trajectories between clock reads
+    private static final double BIN = 0.25;          // energy histogram resolution, score points
+    private static final double RIDGE = 1.0;         // as in EnergyForecaster; the bias is left unpenalized
+
+    // One plan, repeated every day. AS_USUAL draws the value from the history instead.
+    public static final class Scenario {
+        public static final int AS_USUAL = -1;
+
+        public final int sleepHours;
+        public final int caffeine;
+        public final int days;
+
+        public Scenario(int sleepHours, int caffeine, int days) {
+            if (sleepHours < AS_USUAL || sleepHours > 24 || caffeine < AS_USUAL || days < 1 || days > MAX_DAYS) {
+                throw new IllegalArgumentException("scenario needs sleep 0-24, caffeine >= 0 and 1-" + MAX_DAYS + " days");
+            }
+            this.sleepHours = sleepHours;
+            this.caffeine = caffeine;
+            this.days = days;
+        }
+
+        // "sleep=6,caffeine=4,days=7"; unset keys stay as usual (days: 7)
+        public static Scenario parse(String spec) {
+            int sleep = AS_USUAL, caffeine = AS_USUAL, days = 7;
+            for (String part : spec.split(",")) {
+                if (part.isBlank()) continue;
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("expected key=value: " + part);
+                int v = Integer.parseInt(kv[1].trim());
+                switch (kv[0].trim()) {
+                    case "sleep": sleep = v; break;
+                    case "caffeine": caffeine = v; break;
+                    case "days": days = v; break;
+                    default: throw new IllegalArgumentException("unknown scenario setting: " + kv[0]);
+                }
+            }
+            return new Scenario(sleep, caffeine, days);
+        }
+
+        @Override
+        public String toString() {
+            return "sleep=" + (sleepHours == AS_USUAL ? "usual" : sleepHours + "h")
+                    + ", caffeine=" + (caffeine == AS_USUAL ? "usual" : caffeine + " cups") + ", " + days + " days";
+        }
+    }
+
+    // Percentile bands per simulated day.
+    public static final class Result {
+        private final Scenario scenario;
+        private final LocalDate firstDay;
+        private final long[][] energy;   // [day][bin]
+        private final long[][] mood;     // [day][mood - 1]
+        private final long[] crashing;   // trajectories crashing on that day
+        private final long crashedAny;   // trajectories crashing on any day
+        private final long trajectories;
+        private final boolean truncated;
+        private final long micros;
+        private final long seed;
+
+        Result(Scenario scenario, LocalDate firstDay, Partial p, boolean truncated, long micros, long seed) {
+            this.scenario = scenario;
+            this.firstDay = firstDay;
+            this.energy = p.energy;
+            this.mood = p.mood;
+            this.crashing = p.crashing;
+            this.crashedAny = p.crashedAny;
+            this.trajectories = p.trajectories;
+            this.truncated = truncated;
+            this.micros = micros;
+            this.seed = seed;
+        }
+
+        public Scenario scenario() { return scenario; }
+        public int days() { return crashing.length; }
+        public LocalDate date(int day) { return firstDay.plusDays(day); }
+        public long trajectories() { return trajectories; }
+        public boolean truncated() { return truncated; }   // the budget ran out before every trajectory ran
+        public long micros() { return micros; }
+        public long seed() { return seed; }                 // run() again with it for the same bands
+
+        // q in [0, 1]; rounded down to BIN score points
+        public double energyPercentile(int day, double q) {
+            int b = percentileIndex(energy[day], q);
+            return b < 0 ? 0.0 : b * BIN;
+        }
+
+        public int moodPercentile(int day, double q) {
+            return percentileIndex(mood[day], q) + 1;
+        }
+
+        public double meanMood(int day) {
+            long n = 0, sum = 0;
+            for (int m = 0; m < 5; m++) {
+                n += mood[day][m];
+                sum += mood[day][m] * (m + 1);
+            }
+            return n == 0 ? 0.0 : (double) sum / n;
+        }
+
+        public double crashProbability(int day) {
+            return trajectories == 0 ? 0.0 : (double) crashing[day] / trajectories;
+        }
+
+        // probability of at least one crash day within the horizon
+        public double crashProbability() {
+            return trajectories == 0 ? 0.0 : (double) crashedAny / trajectories;
+        }
+
+        private long total(long[] counts) {
+            long n = 0;
+            for (long c : counts) n += c;
+            return n;
+        }
+
+        private int percentileIndex(long[] counts, double q) {
+            long n = total(counts);
+            if (n == 0) return -1;
+            long rank = Math.max(1, (long) Math.ceil(q * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i;
+            }
+            return counts.length - 1;
+        }
+
+        // table with 10th/50th/90th percentiles per day
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("What if: ").append(scenario).append('\n');
+            sb.append("date        energy p10 / p50 / p90   mood p10-p90 (mean)  crash\n");
+            for (int d = 0; d < days(); d++) {
+                sb.append(String.format("%s  %6.1f / %5.1f / %5.1f    %d-%d (%.1f)          %4.1f%%%n", date(d),
+                        energyPercentile(d, 0.1), energyPercentile(d, 0.5), energyPercentile(d, 0.9),
+                        moodPercentile(d, 0.1), moodPercentile(d, 0.9), meanMood(d), 100 * crashProbability(d)));
+            }
+            sb.append(String.format("Crash within %d days: %.1f%% (%d trajectories, %.1f ms%s)", days(),
+                    100 * crashProbability(), trajectories, micros / 1000.0, truncated ? ", budget reached" : ""));
+            return sb.toString();
+        }
+    }
+
+    // per-task counts, merged in task order
+    private static final class Partial {
+        final long[][] energy;
+        final long[][] mood;
+        final long[] crashing;
+        long crashedAny, trajectories;
+
+        Partial(int days, int bins) {
+            energy = new long[days][bins];
+            mood = new long[days][5];
+            crashing = new long[days];
+        }
+
+        void add(Partial o) {
+            for (int d = 0; d < crashing.length; d++) {
+                for (int b = 0; b < energy[d].length; b++) energy[d][b] += o.energy[d][b];
+                for (int m = 0; m < 5; m++) mood[d][m] += o.mood[d][m];
+                crashing[d] += o.crashing[d];
+            }
+            crashedAny += o.crashedAny;
+            trajectories += o.trajectories;
+        }
+    }
+
+    // history columns, row i a real day; residual rows 1..n-1 (each needs the day before)
+    private final int[] sleep, caffeine;
+    private final double[] moodResidual, productivityResidual, scoreResidual;
+    private final double[] moodWeights, productivityWeights;
+    private final double maxScore;
+    private final EnergyEntry latest;
+    private final CrashDetector crashes;
+
+    // `history` oldest first; `crashes` is copied
+    EnergySimulator(List<EnergyEntry> history, CrashDetector crashes) {
+        int n = history.size();
+        if (n < MIN_HISTORY) throw new IllegalArgumentException("need at least " + MIN_HISTORY + " days of history to simulate");
+        sleep = new int[n];
+        caffeine = new int[n];
+        int[] mood = new int[n], productivity = new int[n];
+        double[] score = new double[n];
+        double max = 0;
+        for (int i = 0; i < n; i++) {
+            EnergyEntry e = history.get(i);
+            sleep[i] = e.getSleepHours();
+            caffeine[i] = e.getCaffeine();
+            mood[i] = e.getMood();
+            productivity[i] = e.getProductivity();
+            score[i] = e.getEnergyScore();
+            max = Math.max(max, score[i]);
+        }
+
+        // mood ~ 1, sleep, caffeine, yesterday's mood
+        // productivity ~ 1, sleep, caffeine, yesterday's productivity, today's mood
+        double[][] x = new double[n - 1][];
+        double[] y = new double[n - 1];
+        for (int i = 1; i < n; i++) {
+            x[i - 1] = moodFeatures(sleep[i], caffeine[i], mood[i - 1]);
+            y[i - 1] = mood[i];
+        }
+        moodWeights = fit(x, y);
+        for (int i = 1; i < n; i++) {
+            x[i - 1] = productivityFeatures(sleep[i], caffeine[i], productivity[i - 1], mood[i]);
+            y[i - 1] = productivity[i];
+        }
+        productivityWeights = fit(x, y);
+
+        moodResidual = new double[n];
+        productivityResidual = new double[n];
+        scoreResidual = new double[n];
+        for (int i = 1; i < n; i++) {
+            moodResidual[i] = mood[i] - dot(moodWeights, moodFeatures(sleep[i], caffeine[i], mood[i - 1]));
+            productivityResidual[i] = productivity[i]
+                    - dot(productivityWeights, productivityFeatures(sleep[i], caffeine[i], productivity[i - 1], mood[i]));
+            scoreResidual[i] = score[i] - LinearScoringModel.DEFAULT.score(sleep[i], mood[i], productivity[i], caffeine[i]);
+            max = Math.max(max, LinearScoringModel.DEFAULT.score(24, 5, 5, 0) + scoreResidual[i]);
+        }
+        maxScore = max;
+        latest = history.get(n - 1);
+        this.crashes = crashes.copy();
+    }
+
+    public Result run(Scenario scenario) {
+        return run(scenario, DEFAULT_TRAJECTORIES, DEFAULT_BUDGET_MILLIS, 1L);
+    }
+
+    // Runs up to `trajectories`; tasks stop starting trajectories once `budgetMillis`
+    // has passed (0: no budget), and the result says how many ran.
+    public Result run(Scenario scenario, int trajectories, long budgetMillis, long seed) {
+        if (trajectories < 1) throw new IllegalArgumentException("trajectories must be positive");
+        long t0 = System.nanoTime();
+        long deadline = budgetMillis <= 0 ? Long.MAX_VALUE : t0 + budgetMillis * 1_000_000;
+        int bins = (int) Math.ceil(maxScore / BIN) + 1;
+        int chunks = Math.min(CHUNKS, trajectories);
+
+        SplittableRandom root = new SplittableRandom(seed);
+        List<ForkJoinTask<Partial>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int count = trajectories / chunks + (c < trajectories % chunks ? 1 : 0);
+            SplittableRandom rng = root.split();
+            tasks.add(ForkJoinPool.commonPool().submit(() -> simulate(scenario, count, bins, rng, deadline)));
+        }
+        Partial total = new Partial(scenario.days, bins);
+        for (ForkJoinTask<Partial> t : tasks) total.add(t.join());
+        long micros = (System.nanoTime() - t0) / 1000;
+        EnergyMetrics.SIMULATE.record(micros * 1000);
+        return new Result(scenario, latest.getDate().plusDays(1), total, total.trajectories < trajectories, micros, seed);
+    }
+
+    private Partial simulate(Scenario s, int count, int bins, SplittableRandom rng, long deadline) {
+        Partial p = new Partial(s.days, bins);
+        CrashDetector d = crashes.copy();
+        int rows = sleep.length;
+        for (int t = 0; t < count; t++) {
+            if (t % DEADLINE_CHECK == 0 && System.nanoTime() > deadline) break;
+            d.copyFrom(crashes);
+            int mood = latest.getMood(), productivity = latest.getProductivity();
+            boolean crashed = false;
+            for (int day = 0; day < s.days; day++) {
+                int j = 1 + rng.nextInt(rows - 1);
+                int sl = s.sleepHours == Scenario.AS_USUAL ? sleep[j] : s.sleepHours;
+                int caf = s.caffeine == Scenario.AS_USUAL ? caffeine[j] : s.caffeine;
+                mood = clamp(moodWeights[0] + moodWeights[1] * (sl / 10.0) + moodWeights[2] * (caf / 5.0)
+                        + moodWeights[3] * (mood / 5.0) + moodResidual[j]);
+                productivity = clamp(productivityWeights[0] + productivityWeights[1] * (sl / 10.0)
+                        + productivityWeights[2] * (caf / 5.0) + productivityWeights[3] * (productivity / 5.0)
+                        + productivityWeights[4] * (mood / 5.0) + productivityResidual[j]);
+                double score = Math.max(0.0,
+                        LinearScoringModel.DEFAULT.score(sl, mood, productivity, caf) + scoreResidual[j]);
+                d.update(score);
+                p.energy[day][Math.min(bins - 1, (int) (score / BIN))]++;
+                p.mood[day][mood - 1]++;
+                if (d.isCrashing()) {
+                    p.crashing[day]++;
+                    crashed = true;
+                }
+            }
+            if (crashed) p.crashedAny++;
+            p.trajectories++;
+        }
+        return p;
+    }
+
+    // a 1-5 rating
+    private static int clamp(double v) {
+        return (int) Math.max(1, Math.min(5, Math.round(v)));
+    }
+
+    // inputs scaled to about [0, 1] like EnergyForecaster's
+    private static double[] moodFeatures(int sleep, int caffeine, int yesterdayMood) {
+        return new double[]{1, sleep / 10.0, caffeine / 5.0, yesterdayMood / 5.0};
+    }
+
+    private static double[] productivityFeatures(int sleep, int caffeine, int yesterdayProductivity, int mood) {
+        return new double[]{1, sleep / 10.0, caffeine / 5.0, yesterdayProductivity / 5.0, mood / 5.0};
+    }
+
+    private static double dot(double[] w, double[] x) {
+        double s = 0;
+        for (int i = 0; i < w.length; i++) s += w[i] * x[i];
+        return s;
+    }
+
+    // Ridge least squares through the normal equations (a handful of features).
+    private static double[] fit(double[][] x, double[] y) {
+        int k = x[0].length;
+        double[] a = new double[k * k], b = new double[k];
+        for (int i = 0; i < k; i++) a[i * k + i] = i == 0 ? 1e-6 : RIDGE;
+        for (int r = 0; r < x.length; r++) {
+            for (int i = 0; i < k; i++) {
+                b[i] += x[r][i] * y[r];
+                for (int j = 0; j < k; j++) a[i * k + j] += x[r][i] * x[r][j];
+            }
+        }
+        // Cholesky A = L L^T in place (lower triangle), then two triangular solves
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j <= i; j++) {
+                double s = a[i * k + j];
+                for (int m = 0; m < j; m++) s -= a[i * k + m] * a[j * k + m];
+                a[i * k + j] = i == j ? Math.sqrt(Math.max(s, 1e-12)) : s / a[j * k + j];
+            }
+        }
+        double[] w = new double[k];
+        for (int i = 0; i < k; i++) {
+            double s = b[i];
+            for (int m = 0; m < i; m++) s -= a[i * k + m] * w[m];
+            w[i] = s / a[i * k + i];
+        }
+        for (int i = k - 1; i >= 0; i--) {
+            double s = w[i];
+            for (int m = i + 1; m < k; m++) s -= a[m * k + i] * w[m];
+            w[i] = s / a[i * k + i];
+        }
+        return w;
+    }
+}
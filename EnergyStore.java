@@ -0,0 +1,51 @@
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// Snapshot persistence behind EnergyTracker. The backend is picked from the
+// file name: *.bin uses the binary format, anything else plain CSV.
+public interface EnergyStore {
+
+    Path getPath();
+
+    boolean exists();
+
+    // Feed every stored entry to the sink; rows that cannot be read go to `errors`.
+    void load(Consumer<EnergyEntry> sink, EnergyCsvParser.ErrorHandler errors) throws IOException;
+
+    // Replace the snapshot with `entries` (date order).
+    void save(Collection<EnergyEntry> entries) throws IOException;
+
+    // where save() writes before swapping the file in
+    static Path tempFile(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    // Swap a fully written and synced temp file into place, so a crash leaves
+    // either the old snapshot or the new one, never half of one.
+    static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static EnergyStore forFile(String filename) {
+        if (filename.endsWith(BinaryEnergyStore.EXTENSION)) return new BinaryEnergyStore(filename);
+        return new CsvEnergyStore(filename);
+    }
+
+    // Lossless copy between backends, e.g. CSV -> binary; returns the number of entries copied.
+    static int convert(EnergyStore from, EnergyStore to) throws IOException {
+        EnergyIndex index = new EnergyIndex();
+        from.load(index::upsert, (line, reason) ->
+                System.out.println("Skipped malformed row " + from.getPath().getFileName() + ":" + line + " (" + reason + ")"));
+        to.save(index.values());
+        return index.size();
+    }
+}
@@ -1,98 +1,657 @@
 import java.io.*;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class EnergyTracker {
-    private List<EnergyEntry> entries;
-    private File dataFile;
+    // journal gets folded into the snapshot once it holds this many records
+    private static final int COMPACT_THRESHOLD = 1000;
+    private static final int JOURNAL_GROUP_SIZE = 16;
+    private static final int MAX_REPORTED_ROWS = 10; // malformed rows printed individually
+    private static final int ASYNC_MAX_PENDING = 4096; // unsaved changes before adds wait for the writer
+    private static final int LAZY_MAX_TAIL = 100_000; // newest rows a lazy open may read up front
+    private static final int GRAPH_MAX_BARS = 100; // longer asciiGraph requests are downsampled to this
+
+    private volatile EnergyIndex entries;
+    private EnergyStore store;
+    private EnergyJournal journal; // null when every add rewrites the snapshot
+    private volatile AsyncPersister persister; // set by persistAsync(); replaces the journal
+    private final WindowSizes windows;
+    private volatile EnergyAggregates stats;
+    private volatile EnergyColumns columns; // primitive-array mirror of entries for full scans
+    private volatile EnergyBitmaps bitmaps; // built by the first query(), then kept in step with upsert
+    private int malformedRows;
+    private final boolean lazy; // opened with openLazy(): keeps the .summary sidecar current for the next one
+
+    // openLazy(): set while only the newest days are loaded, completed once the rest is in
+    private volatile CompletableFuture<Void> fullHistory;
+    private volatile LocalDate oldestLoaded;
+    private volatile HistorySummary summary; // whole-history totals until then, if the sidecar is current
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private final long id = NEXT_ID.incrementAndGet(); // this tracker's key in the result cache
+    private volatile long version; // bumped under the monitor on every change to the entries
+    private volatile ResultCache cache = ResultCache.SHARED;
 
     public EnergyTracker(String filename) {
-        entries = new ArrayList<>();
-        dataFile = new File(filename);
-        loadFromFile();
+        this(filename, false);
+    }
+
+    // journaled = true appends each add to <filename>.journal instead of rewriting the snapshot;
+    // a *.bin filename selects the binary snapshot format
+    public EnergyTracker(String filename, boolean journaled) {
+        this(EnergyStore.forFile(filename), journaled);
+    }
+
+    public EnergyTracker(String filename, boolean journaled, WindowSizes windows) {
+        this(EnergyStore.forFile(filename), journaled, windows);
+    }
+
+    public EnergyTracker(EnergyStore store, boolean journaled) {
+        this(store, journaled, WindowSizes.DEFAULT);
+    }
+
+    // `windows` sets how many recent entries feed the predictions, crash check, weekly view and correlation
+    public EnergyTracker(EnergyStore store, boolean journaled, WindowSizes windows) {
+        this(store, journaled, windows, false);
+    }
+
+    // Like new EnergyTracker(filename, journaled), but for a date-sorted CSV file only the newest
+    // days are read before it returns: enough for the rolling windows, forecaster and crash detector, so the
+    // dashboard is ready in the same time however long the history is. The rest loads on a
+    // background thread; adds and whole-history queries (getAll, highestEnergy, ...) wait for it.
+    // averageEnergy and recommendDeepWorkTime answer from the <filename>.summary
+    // sidecar that lazily opened trackers write on every save, or wait too when it is
+    // missing or out of date.
+    public static EnergyTracker openLazy(String filename, boolean journaled) {
+        return new EnergyTracker(EnergyStore.forFile(filename), journaled, WindowSizes.DEFAULT, true);
+    }
+
+    private EnergyTracker(EnergyStore store, boolean journaled, WindowSizes windows, boolean lazy) {
+        entries = new EnergyIndex();
+        this.lazy = lazy;
+        this.store = store;
+        this.windows = windows;
+        this.stats = new EnergyAggregates(windows);
+        long t0 = System.nanoTime();
+        File log = new File(store.getPath() + ".journal");
+        boolean replay = journaled || log.exists();
+        CsvEnergyStore.Tail tail = lazy ? loadTail() : null;
+        List<EnergyEntry> logged = new ArrayList<>();
+        if (tail == null) {
+            loadFromFile();
+            if (replay) replayJournal(log, entries::upsert);
+        } else {
+            if (replay) replayJournal(log, logged::add);
+            for (EnergyEntry e : tail.entries) entries.upsert(e);
+            LocalDate tailStart = tail.wholeFile ? null : tail.entries.get(0).getDate();
+            if (tailStart != null && logged.stream().anyMatch(e -> e.getDate().isBefore(tailStart))) {
+                // the journal edits a day before the tail; patching that in later is not worth it
+                entries.clear();
+                loadFromFile();
+            } else if (tailStart != null) {
+                oldestLoaded = tailStart;
+                if (logged.isEmpty()) summary = HistorySummary.read(store.getPath());
+                fullHistory = new CompletableFuture<>();
+            }
+            for (EnergyEntry e : logged) entries.upsert(e);
+        }
+        EnergyMetrics.LOAD.record(System.nanoTime() - t0);
+        EnergyMetrics.ROWS_LOADED.add(entries.size());
+        if (malformedRows > MAX_REPORTED_ROWS) {
+            System.out.println("Skipped " + malformedRows + " malformed rows in total.");
+        }
+        stats.rebuild(entries);
+        columns = EnergyColumns.of(entries.values());
+        if (fullHistory != null) loadHistoryInBackground(logged);
+        if (!journaled) closeJournal();
+    }
+
+    // The newest rows a lazy open needs, or null to load everything now.
+    private CsvEnergyStore.Tail loadTail() {
+        if (!(store instanceof CsvEnergyStore)) return null;
+        long rows = Math.max(Math.max(windows.largest(), stats.crashes().horizon()),
+                (long) stats.forecaster().horizon() + 1);
+        if (rows > LAZY_MAX_TAIL) return null;
+        try {
+            return ((CsvEnergyStore) store).loadTail((int) rows); // null when the file is not date-sorted
+        } catch (IOException e) {
+            return null; // the full load reports it
+        }
+    }
+
+    // Second half of a lazy open: read the whole snapshot, re-apply the journal and swap
+    // the full history in. Nothing else changes the entries meanwhile, every mutator
+    // waits in awaitFullHistory() first.
+    private void loadHistoryInBackground(List<EnergyEntry> logged) {
+        Thread loader = new Thread(() -> {
+            boolean hadSummary = summary != null;
+            int skippedBefore = malformedRows;
+            String name = store.getPath().getFileName().toString();
+            try {
+                EnergyIndex full = new EnergyIndex();
+                store.load(full::upsert, (line, reason) -> reportMalformed(name, line, reason));
+                for (EnergyEntry e : logged) full.upsert(e);
+                EnergyAggregates fullStats = new EnergyAggregates(windows);
+                fullStats.rebuild(full);
+                EnergyColumns fullColumns = EnergyColumns.of(full.values());
+                // one step under the monitor, like any other change to the three; readers that
+                // did not wait only use the newest days, which the tail and full history share
+                synchronized (this) {
+                    EnergyMetrics.ROWS_LOADED.add(full.size() - entries.size());
+                    columns = fullColumns;
+                    stats = fullStats;
+                    entries = full;
+                    summary = null;
+                    version++;
+                }
+                if (malformedRows - skippedBefore > MAX_REPORTED_ROWS) {
+                    System.out.println("Skipped " + (malformedRows - skippedBefore) + " malformed rows in total.");
+                }
+                if (logged.isEmpty() && !hadSummary) writeSummary(); // the next lazy open can use it
+            } catch (IOException e) {
+                EnergyMetrics.IO_ERRORS.increment();
+                System.out.println("Could not read data file: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    if (summary != null) { // the load failed: stop answering from the sidecar
+                        summary = null;
+                        version++;
+                    }
+                }
+                fullHistory.complete(null);
+            }
+        }, "energy-history-" + store.getPath().getFileName());
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Lazily opened trackers: block until the whole history is loaded.
+    private void awaitFullHistory() {
+        CompletableFuture<Void> f = fullHistory;
+        if (f != null && !f.isDone()) f.join();
+    }
+
+    private void awaitIfBefore(LocalDate date) {
+        LocalDate start = oldestLoaded;
+        if (start != null && date.isBefore(start)) awaitFullHistory();
     }
 
     // Add and persist
     public void addEntry(EnergyEntry e) {
-        // If an entry for same date exists, replace it (makes sense for daily edits)
-        entries.removeIf(x -> x.getDate().equals(e.getDate()));
-        entries.add(e);
-        // keep sorted by date ascending
-        entries.sort(Comparator.comparing(EnergyEntry::getDate));
-        saveToFile();
+        add(e);
     }
 
-    public List<EnergyEntry> getAll() {
-        return Collections.unmodifiableList(entries);
+    // Like addEntry; the future completes once the entry is on disk. Only differs
+    // from addEntry after persistAsync(), otherwise it is already done on return.
+    public CompletableFuture<Void> addEntryAsync(EnergyEntry e) {
+        long change = add(e);
+        AsyncPersister p = persister;
+        return p == null ? CompletableFuture.completedFuture(null) : p.whenPersisted(change);
     }
 
-    private void loadFromFile() {
-        if (!dataFile.exists()) return;
-        try (BufferedReader br = new BufferedReader(new FileReader(dataFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
+    // returns the async writer's change number, 0 when persisted synchronously
+    private long add(EnergyEntry e) {
+        long t0 = System.nanoTime();
+        awaitFullHistory();
+        AsyncPersister p = persister;
+        if (p != null) p.awaitCapacity();
+        long change = 0;
+        synchronized (this) {
+            upsert(e);
+            if (p != null) {
+                change = p.markDirty();
+            } else if (journal == null) {
+                saveToFile();
+            } else {
+                try {
+                    journal.append(e);
+                    if (journal.size() >= COMPACT_THRESHOLD) compact();
+                } catch (IOException ex) {
+                    EnergyMetrics.IO_ERRORS.increment();
+                    System.out.println("Could not write journal: " + ex.getMessage());
+                }
+            }
+        }
+        EnergyMetrics.ADD_ENTRY.record(System.nanoTime() - t0);
+        return change;
+    }
+
+    // Save in the background instead of on the caller's thread: adds only mark the
+    // data dirty, and a writer thread saves one snapshot per `batchSize` changes or
+    // per `intervalMillis`, whichever comes first. Any journal is compacted and dropped.
+    public synchronized void persistAsync(long intervalMillis, int batchSize) {
+        if (persister != null) return;
+        awaitFullHistory();
+        closeJournal();
+        persister = new AsyncPersister(store, this, () -> new ArrayList<>(entries.values()),
+                intervalMillis, batchSize, ASYNC_MAX_PENDING);
+    }
+
+    // Bulk upsert: the batch is deduped by date (later rows win), merged into the
+    // history and persisted once, instead of once per entry as with addEntry.
+    public ImportResult addAll(Collection<EnergyEntry> batch) {
+        return addAll(batch, 0, System.nanoTime());
+    }
+
+    // Bulk import of a CSV or *.bin file; unreadable rows are counted and skipped.
+    public ImportResult importFile(String filename) {
+        long start = System.nanoTime();
+        EnergyStore source = EnergyStore.forFile(filename);
+        String name = source.getPath().getFileName().toString();
+        List<EnergyEntry> batch = new ArrayList<>();
+        int[] rejected = {0};
+        try {
+            source.load(batch::add, (line, reason) -> {
+                if (++rejected[0] <= MAX_REPORTED_ROWS) {
+                    System.out.println("Skipped malformed row " + name + ":" + line + " (" + reason + ")");
+                }
+            });
+        } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
+            System.out.println("Could not read import file: " + e.getMessage());
+        }
+        return addAll(batch, rejected[0], start);
+    }
+
+    private ImportResult addAll(Collection<EnergyEntry> batch, int rejected, long startNanos) {
+        TreeMap<Long, EnergyEntry> byDay = new TreeMap<>();
+        for (EnergyEntry e : batch) byDay.put(e.getDate().toEpochDay(), e);
+        if (!byDay.isEmpty()) awaitFullHistory();
+        AsyncPersister p = persister;
+        if (p != null && !byDay.isEmpty()) p.awaitCapacity();
+        synchronized (this) {
+            if (!byDay.isEmpty()) mergeBatch(byDay);
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        EnergyMetrics.ADD_ALL.record(elapsed);
+        return new ImportResult(batch.size(), byDay.size(), rejected, elapsed);
+    }
+
+    // callers hold the monitor
+    private void mergeBatch(TreeMap<Long, EnergyEntry> byDay) {
+        EnergyEntry last = entries.last();
+        if (last == null || byDay.firstKey() > last.getDate().toEpochDay()) {
+            // pure append: the aggregates and columns take it incrementally
+            for (EnergyEntry e : byDay.values()) upsert(e);
+        } else {
+            // back-filled history: one rebuild beats shifting columns and refilling windows per row
+            for (EnergyEntry e : byDay.values()) entries.upsert(e);
+            stats.rebuild(entries);
+            columns = EnergyColumns.of(entries.values());
+            bitmaps = null;
+            version++;
+        }
+        persistBatch(byDay.values());
+    }
+
+    private void persistBatch(Collection<EnergyEntry> batch) {
+        AsyncPersister p = persister;
+        if (p != null) {
+            p.markDirty(); // the whole batch is one change
+            return;
+        }
+        if (journal == null) {
+            saveToFile();
+            return;
+        }
+        if (journal.size() + batch.size() >= COMPACT_THRESHOLD) {
+            // the snapshot rewrite is due anyway, so skip journaling the batch
+            if (!saveToFile()) return;
+            try {
+                journal.truncate();
+            } catch (IOException e) {
+                EnergyMetrics.IO_ERRORS.increment();
+                System.out.println("Could not truncate journal: " + e.getMessage());
+            }
+            return;
+        }
+        try {
+            for (EnergyEntry e : batch) journal.append(e);
+            journal.sync();
+        } catch (IOException ex) {
+            EnergyMetrics.IO_ERRORS.increment();
+            System.out.println("Could not write journal: " + ex.getMessage());
+        }
+    }
+
+    // Re-score the whole history with `model` in one batch pass over the columns,
+    // re-index and save it. Returns how many scores changed. Entries are never
+    // changed in place (snapshots, caches and readers may still hold them): changed
+    // days get new entries, and the new index, columns and aggregates are swapped
+    // in together under the monitor, like the lazy loader's swap.
+    public int rescore(ScoringModel model) {
+        awaitFullHistory();
+        AsyncPersister p = persister;
+        if (p != null) p.awaitCapacity();
+        synchronized (this) {
+            if (columns == null) columns = EnergyColumns.of(entries.values());
+            double[] scores = new double[columns.size()];
+            model.score(columns.sleepArray(), columns.moodArray(), columns.productivityArray(),
+                    columns.caffeineArray(), scores);
+            double[] current = columns.scoreArray();
+            EnergyIndex rescored = new EnergyIndex();
+            int changed = 0, row = 0;
+            for (EnergyEntry e : entries.values()) {
+                if (scores[row] != current[row]) {
+                    e = EnergyEntry.of(e.getDate(), e.getSleepHours(), e.getMood(), e.getProductivity(),
+                            e.getCaffeine(), e.getWorkType(), e.getPeakTime(), scores[row]);
+                    changed++;
+                }
+                rescored.upsert(e);
+                row++;
+            }
+            if (changed == 0) return 0;
+            EnergyAggregates rescoredStats = new EnergyAggregates(windows);
+            rescoredStats.rebuild(rescored);
+            columns = EnergyColumns.of(rescored.values());
+            stats = rescoredStats;
+            entries = rescored;
+            bitmaps = null; // energy classes moved
+            version++;
+            if (p != null) {
+                p.markDirty();
+            } else if (saveToFile() && journal != null) {
                 try {
-                    EnergyEntry e = EnergyEntry.fromCSV(line);
-                    entries.add(e);
-                } catch (Exception ex) {
-                    // skip malformed
+                    journal.truncate(); // the snapshot holds the journaled entries with their new scores
+                } catch (IOException e) {
+                    EnergyMetrics.IO_ERRORS.increment();
+                    System.out.println("Could not truncate journal: " + e.getMessage());
                 }
             }
-            entries.sort(Comparator.comparing(EnergyEntry::getDate));
+            return changed;
+        }
+    }
+
+    // If an entry for same date exists, replace it (makes sense for daily edits);
+    // callers hold the monitor
+    private void upsert(EnergyEntry e) {
+        EnergyEntry replaced = entries.upsert(e);
+        stats.update(e, replaced, entries);
+        if (columns != null) columns.upsert(e);
+        EnergyBitmaps b = bitmaps;
+        if (b != null) {
+            if (replaced != null) b.replace(columns.find(e.getDate()), replaced, e);
+            else if (entries.last() == e && b.rows() == entries.size() - 1) b.append(e);
+            else bitmaps = null; // a back-dated day shifted the rows; the next query() rebuilds
+        }
+        version++;
+    }
+
+    // Filter, group-by and top-k queries over the whole history (see EnergyQuery).
+    // The bitmap indexes are built on the first call and maintained from then on.
+    public EnergyQuery query() {
+        awaitFullHistory();
+        // under the monitor, so the bitmaps and columns come from the same version of the rows
+        synchronized (this) {
+            EnergyBitmaps b = bitmaps;
+            if (b == null) bitmaps = b = EnergyBitmaps.of(entries.values());
+            return new EnergyQuery(columns, b);
+        }
+    }
+
+    // Fold the journal back into the snapshot (or, when saving asynchronously, save now).
+    // The async flush waits for the writer, which needs this tracker's monitor to take
+    // its snapshot, so only the journal path holds the monitor.
+    public void compact() {
+        if (persister != null) {
+            flush();
+            return;
+        }
+        awaitFullHistory();
+        synchronized (this) {
+            if (journal == null || journal.size() == 0) return;
+            if (!saveToFile()) return; // keep the journal, it is the only copy
+            try {
+                journal.truncate();
+            } catch (IOException e) {
+                EnergyMetrics.IO_ERRORS.increment();
+                System.out.println("Could not truncate journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Force pending journal records (or pending async saves) to disk.
+    public void flush() {
+        AsyncPersister p = persister;
+        if (p != null) {
+            try {
+                p.flush().join();
+            } catch (CompletionException e) {
+                // already reported by the writer
+            }
+            return;
+        }
+        if (journal == null) return;
+        try {
+            journal.sync();
         } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
+            System.out.println("Could not sync journal: " + e.getMessage());
+        }
+    }
+
+    // Write out pending changes and release the journal or background writer;
+    // the tracker falls back to full rewrites afterwards.
+    public void close() {
+        AsyncPersister p = persister;
+        if (p != null) {
+            persister = null;
+            p.close();
+        }
+        closeJournal();
+    }
+
+    public List<EnergyEntry> getAll() {
+        awaitFullHistory();
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+    }
+
+    public int size() {
+        awaitFullHistory();
+        return entries.size();
+    }
+
+    public Optional<EnergyEntry> getEntry(LocalDate date) {
+        awaitIfBefore(date);
+        return Optional.ofNullable(entries.get(date));
+    }
+
+    // entries dated from..to inclusive, oldest first
+    public List<EnergyEntry> getRange(LocalDate from, LocalDate to) {
+        awaitIfBefore(from);
+        return Collections.unmodifiableList(entries.range(from, to));
+    }
+
+    // most recent n entries, oldest first
+    public List<EnergyEntry> getLast(int n) {
+        if (n > entries.size()) awaitFullHistory();
+        return Collections.unmodifiableList(entries.lastN(n));
+    }
+
+    // columnar view of the full history for allocation-free scans; treat as read-only
+    public EnergyColumns getColumns() {
+        awaitFullHistory();
+        return columns;
+    }
+
+    // Reports come from `cache` while the entries are unchanged; null turns caching off.
+    public void setResultCache(ResultCache cache) {
+        this.cache = cache;
+    }
+
+    // increases with every change to the entries
+    public long getVersion() {
+        return version;
+    }
+
+    // Result of compute() for (query, param) at the current version, from the cache when possible.
+    // compute must depend only on this tracker's entries.
+    public <T> T cached(String query, int param, Supplier<T> compute) {
+        ResultCache c = cache;
+        if (c == null) return compute.get();
+        return c.get(id, version, query, param, compute);
+    }
+
+    private void loadFromFile() {
+        String name = store.getPath().getFileName().toString();
+        try {
+            store.load(entries::upsert, (line, reason) -> reportMalformed(name, line, reason));
+        } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
             System.out.println("Could not read data file: " + e.getMessage());
         }
     }
 
-    private void saveToFile() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(dataFile, false))) {
-            for (EnergyEntry e : entries) pw.println(e.toCSV());
+    private void reportMalformed(String source, long line, String reason) {
+        malformedRows++;
+        EnergyMetrics.ROWS_SKIPPED.increment();
+        if (malformedRows <= MAX_REPORTED_ROWS) {
+            System.out.println("Skipped malformed row " + source + ":" + line + " (" + reason + ")");
+        }
+    }
+
+    // rows dropped as malformed while loading the snapshot and journal
+    public int getMalformedRowCount() {
+        awaitFullHistory();
+        return malformedRows;
+    }
+
+    private void replayJournal(File log, Consumer<EnergyEntry> sink) {
+        try {
+            journal = new EnergyJournal(log.getPath(), JOURNAL_GROUP_SIZE);
+            journal.replay(sink,
+                    (line, reason) -> reportMalformed(log.getName(), line, reason));
         } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
+            System.out.println("Could not read journal: " + e.getMessage());
+            journal = null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        compact();
+        try {
+            journal.close();
+            if (journal.size() == 0) Files.deleteIfExists(journal.getPath());
+        } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
+            System.out.println("Could not close journal: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    private boolean saveToFile() {
+        long t0 = System.nanoTime();
+        try {
+            store.save(entries.values());
+            EnergyMetrics.SAVE.record(System.nanoTime() - t0);
+            EnergyMetrics.BYTES_PERSISTED.add(Files.size(store.getPath()));
+        } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
             System.out.println("Could not save data: " + e.getMessage());
+            return false;
+        }
+        if (lazy && store instanceof CsvEnergyStore) writeSummary();
+        return true;
+    }
+
+    // <data file>.summary, read by openLazy()
+    private void writeSummary() {
+        try {
+            HistorySummary.of(stats).write(store.getPath());
+        } catch (IOException e) {
+            EnergyMetrics.IO_ERRORS.increment();
+            System.out.println("Could not write summary: " + e.getMessage());
         }
     }
 
     // basic stats
     public double averageEnergy() {
-        if (entries.isEmpty()) return 0.0;
-        return entries.stream().mapToDouble(EnergyEntry::getEnergyScore).average().orElse(0.0);
+        HistorySummary s = summary;
+        if (s != null) return s.averageScore();
+        awaitFullHistory();
+        return stats.averageScore();
     }
 
     public Optional<EnergyEntry> highestEnergy() {
-        return entries.stream().max(Comparator.comparingDouble(EnergyEntry::getEnergyScore));
+        awaitFullHistory();
+        long t0 = System.nanoTime();
+        int best = -1;
+        EnergyColumns.Cursor c = columns.cursor();
+        while (c.next()) {
+            if (best < 0 || c.score() > columns.score(best)) best = c.row();
+        }
+        EnergyMetrics.EXTREMES.record(System.nanoTime() - t0);
+        return entryAt(best);
     }
 
     public Optional<EnergyEntry> lowestEnergy() {
-        return entries.stream().min(Comparator.comparingDouble(EnergyEntry::getEnergyScore));
+        awaitFullHistory();
+        long t0 = System.nanoTime();
+        int worst = -1;
+        EnergyColumns.Cursor c = columns.cursor();
+        while (c.next()) {
+            if (worst < 0 || c.score() < columns.score(worst)) worst = c.row();
+        }
+        EnergyMetrics.EXTREMES.record(System.nanoTime() - t0);
+        return entryAt(worst);
+    }
+
+    private Optional<EnergyEntry> entryAt(int row) {
+        if (row < 0) return Optional.empty();
+        return Optional.of(entries.get(LocalDate.ofEpochDay(columns.epochDay(row))));
     }
 
-    // Prediction: average of last up to 3 entries
+    // the data file behind this tracker
+    public java.nio.file.Path getPath() {
+        return store.getPath();
+    }
+
+    public WindowSizes getWindowSizes() {
+        return windows;
+    }
+
+    // Prediction: the online regression (EnergyForecaster) once it has learned from
+    // enough days, until then the average of the last up to 3 entries (windows.prediction)
     public double predictTomorrow() {
         if (entries.isEmpty()) return 0.0;
-        List<EnergyEntry> last = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(3)
-                .collect(Collectors.toList());
-        return last.stream().mapToDouble(EnergyEntry::getEnergyScore).average().orElse(0.0);
+        EnergyForecaster f = stats.forecaster();
+        if (f.isWarm()) return f.predictEnergy();
+        return stats.prediction().averageScore();
     }
 
-    // Crash detection: last 2 days average < overall average * 0.9
+    // Crash detection: CrashDetector's EWMA/CUSUM state, updated with every entry
+    // (the recent-days span is windows.crash)
     public boolean isCrashing() {
-        if (entries.size() < 2) return false;
-        List<EnergyEntry> last2 = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(2)
-                .collect(Collectors.toList());
-        double avgLast2 = last2.stream().mapToDouble(EnergyEntry::getEnergyScore).average().orElse(0.0);
-        double overall = averageEnergy();
-        return avgLast2 < overall * 0.9; // slight threshold to avoid false positives
+        return stats.crashes().isCrashing();
+    }
+
+    // the detector's figures behind isCrashing, null without entries
+    public CrashDetector.State crashState() {
+        return stats.crashes().state();
+    }
+
+    // What-if simulations from the newest EnergySimulator.HISTORY_DAYS days and the
+    // current crash state. The snapshot is cheap to take (e.g. under a registry read
+    // lock) and runs without the tracker; throws IllegalArgumentException on too
+    // short a history.
+    public EnergySimulator simulator() {
+        return new EnergySimulator(getLast(Math.min(EnergySimulator.HISTORY_DAYS, entries.size())), stats.crashes());
     }
 
     // energy classification
     public String classifyEnergy(double score) {
+        return energyClass(score);
+    }
+
+    static String energyClass(double score) {
         if (score >= 80) return "High";
         if (score >= 50) return "Medium";
         if (score >= 20) return "Low";
@@ -102,19 +661,12 @@ public class EnergyTracker {
     // recommend deep work time based on peakTime frequency among top half energy days
     public String recommendDeepWorkTime() {
         if (entries.isEmpty()) return "No data";
-        List<EnergyEntry> sorted = entries.stream()
-                .sorted(Comparator.comparingDouble(EnergyEntry::getEnergyScore).reversed())
-                .collect(Collectors.toList());
-        int take = Math.max(1, sorted.size() / 2);
-        Map<String, Long> count = new HashMap<>();
-        for (int i = 0; i < take; i++) {
-            String t = sorted.get(i).getPeakTime();
-            if (t == null || t.isEmpty()) continue;
-            count.put(t, count.getOrDefault(t, 0L) + 1);
-        }
+        HistorySummary s = summary;
+        if (s == null) awaitFullHistory();
+        Map<String, Long> count = s != null ? s.topHalfPeakCounts() : stats.topHalfPeakCounts();
         if (count.isEmpty()) {
             // fallback: use average sleep hour approximate -> suggest morning if average sleep >=7 else afternoon
-            double avgSleep = entries.stream().mapToDouble(EnergyEntry::getSleepHours).average().orElse(7.0);
+            double avgSleep = s != null ? s.averageSleep() : stats.averageSleep();
             return (avgSleep >= 7.0) ? "Morning" : "Afternoon";
         }
         String best = Collections.max(count.entrySet(), Map.Entry.comparingByValue()).getKey();
@@ -126,132 +678,232 @@ public class EnergyTracker {
         }
     }
 
-    // ASCII graph last N days
+    // ASCII graph last N days; beyond GRAPH_MAX_BARS days it is drawn from the rollups like rangeGraph
     public String asciiGraph(int days) {
         if (entries.isEmpty()) return "No data to graph.";
-        List<EnergyEntry> last = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(days)
-                .collect(Collectors.toList());
-        Collections.reverse(last); // oldest first
-        double max = last.stream().mapToDouble(EnergyEntry::getEnergyScore).max().orElse(1.0);
+        if (days > entries.size()) awaitFullHistory();
+        return cached("graph", days, () -> {
+            long t0 = System.nanoTime();
+            String graph;
+            if (days <= GRAPH_MAX_BARS) {
+                graph = appendGraph(new StringBuilder(), days).toString();
+            } else {
+                EnergyColumns c = columns;
+                LocalDate from = LocalDate.ofEpochDay(c.epochDay(Math.max(0, c.size() - days)));
+                graph = appendSeriesGraph(new StringBuilder(), from, entries.last().getDate(), GRAPH_MAX_BARS).toString();
+            }
+            EnergyMetrics.GRAPH.record(System.nanoTime() - t0);
+            return graph;
+        });
+    }
+
+    // ASCII graph of the entries dated from..to in at most `width` bars (see series)
+    public String rangeGraph(LocalDate from, LocalDate to, int width) {
+        awaitIfBefore(from);
+        return cached("graph " + from + ".." + to, width, () -> {
+            long t0 = System.nanoTime();
+            String graph = appendSeriesGraph(new StringBuilder(), from, to, width).toString();
+            EnergyMetrics.GRAPH.record(System.nanoTime() - t0);
+            return graph;
+        });
+    }
+
+    // At most `width` points for from..to, oldest first: the entries themselves when they fit,
+    // otherwise the coarsest rollup tier with at least `width` buckets in the range, thinned to
+    // `width` by largest-triangle-three-buckets on the mean score. Either way the work is bounded
+    // by `width` times the ratio between neighbouring tiers, not by the length of the range.
+    public List<EnergyRollups.Bucket> series(LocalDate from, LocalDate to, int width) {
+        if (width < 3) throw new IllegalArgumentException("width must be at least 3");
+        awaitIfBefore(from);
+        EnergyIndex index = entries;
+        EnergyRollups rollups = stats.rollups();
+        if (index.isEmpty()) return Collections.emptyList();
+        // clamp to the history so open ranges (LocalDate.MIN/MAX) have calendar buckets
+        if (from.isBefore(index.first().getDate())) from = index.first().getDate();
+        if (to.isAfter(index.last().getDate())) to = index.last().getDate();
+        if (from.isAfter(to)) return Collections.emptyList();
+
+        List<EnergyRollups.Bucket> points = null;
+        for (EnergyRollups.Tier tier : EnergyRollups.STORED) { // coarsest first
+            if (rollups.count(tier, from, to) >= width) {
+                points = rollups.buckets(tier, from, to);
+                break;
+            }
+        }
+        if (points == null) { // fewer than `width` weeks: under 7 * width days
+            points = new ArrayList<>();
+            for (EnergyEntry e : index.range(from, to)) points.add(EnergyRollups.Bucket.of(e));
+        }
+        if (points.size() <= width) return Collections.unmodifiableList(points);
+        double[] x = new double[points.size()];
+        double[] y = new double[points.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = points.get(i).start().toEpochDay();
+            y[i] = points.get(i).mean(EnergyRollups.Metric.SCORE);
+        }
+        List<EnergyRollups.Bucket> kept = new ArrayList<>(width);
+        for (int i : Downsample.lttb(x, y, width)) kept.add(points.get(i));
+        return Collections.unmodifiableList(kept);
+    }
+
+    // copies of the weekly, monthly or yearly rollups overlapping from..to, oldest first
+    public List<EnergyRollups.Bucket> rollups(EnergyRollups.Tier tier, LocalDate from, LocalDate to) {
+        awaitIfBefore(from);
+        return Collections.unmodifiableList(stats.rollups().buckets(tier, from, to));
+    }
+
+    private StringBuilder appendGraph(StringBuilder sb, int days) {
+        List<EnergyEntry> last = entries.lastN(days); // oldest first
+        double max = last.isEmpty() ? 1.0 : Double.NEGATIVE_INFINITY;
+        for (EnergyEntry e : last) max = Math.max(max, e.getEnergyScore());
         if (max < 1) max = 1;
-        StringBuilder sb = new StringBuilder();
         sb.append("Energy Graph (last ").append(last.size()).append(" days)\n");
         for (EnergyEntry e : last) {
             int barLen = (int) Math.round((e.getEnergyScore() / max) * 30); // scale to 30 chars
             sb.append(e.getDate()).append(" | ");
             for (int i = 0; i < barLen; i++) sb.append("|");
-            sb.append(String.format(" (%.0f)%n", e.getEnergyScore()));
+            sb.append(" (");
+            ReportFormat.appendFixed(sb, e.getEnergyScore(), 0).append(')').append(ReportFormat.NEWLINE);
         }
-        return sb.toString();
+        return sb;
     }
 
-    // Sleep vs Energy Pearson correlation (last up to 30 days)
+    // one bar per point; rollup bars show the mean score and its range
+    private StringBuilder appendSeriesGraph(StringBuilder sb, LocalDate from, LocalDate to, int width) {
+        List<EnergyRollups.Bucket> points = series(from, to, width);
+        if (points.isEmpty()) return sb.append("No data to graph.\n");
+        EnergyRollups.Tier tier = points.get(0).tier();
+        double max = 1.0;
+        for (EnergyRollups.Bucket b : points) max = Math.max(max, b.mean(EnergyRollups.Metric.SCORE));
+        sb.append("Energy Graph (").append(points.get(0).start()).append(" to ")
+                .append(points.get(points.size() - 1).end()).append(", ").append(points.size()).append(' ')
+                .append(tier.name().toLowerCase()).append("s)\n");
+        for (EnergyRollups.Bucket b : points) {
+            double mean = b.mean(EnergyRollups.Metric.SCORE);
+            int barLen = (int) Math.round((mean / max) * 30);
+            sb.append(b.label()).append(" | ");
+            for (int i = 0; i < barLen; i++) sb.append("|");
+            sb.append(" (");
+            ReportFormat.appendFixed(sb, mean, 0);
+            if (tier != EnergyRollups.Tier.DAY) {
+                sb.append(", ");
+                ReportFormat.appendFixed(sb, b.min(EnergyRollups.Metric.SCORE), 0).append('-');
+                ReportFormat.appendFixed(sb, b.max(EnergyRollups.Metric.SCORE), 0);
+            }
+            sb.append(')').append(ReportFormat.NEWLINE);
+        }
+        return sb;
+    }
+
+    // Sleep vs Energy Pearson correlation (last up to 30 days, windows.correlation)
     public double sleepEnergyCorrelation() {
         if (entries.size() < 2) return Double.NaN;
-        List<EnergyEntry> last = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(30)
-                .collect(Collectors.toList());
-        // use oldest->newest order
-        Collections.reverse(last);
-        int n = last.size();
-        double[] x = new double[n]; // sleep
-        double[] y = new double[n]; // energy
-        for (int i = 0; i < n; i++) {
-            x[i] = last.get(i).getSleepHours();
-            y[i] = last.get(i).getEnergyScore();
-        }
-        double meanX = Arrays.stream(x).average().orElse(0);
-        double meanY = Arrays.stream(y).average().orElse(0);
-        double num = 0, denX = 0, denY = 0;
-        for (int i = 0; i < n; i++) {
-            double dx = x[i] - meanX;
-            double dy = y[i] - meanY;
-            num += dx * dy;
-            denX += dx * dx;
-            denY += dy * dy;
-        }
-        double denom = Math.sqrt(denX * denY);
-        if (denom == 0) return Double.NaN;
-        return num / denom;
-    }
-
-    // mood prediction (simple rounded average of last 3 days)
+        return stats.correlation().sleepScoreCorrelation();
+    }
+
+    // mood prediction (rounded, from the same forecaster; rounded average of the last 3 days while it warms up)
     public int predictMood() {
         if (entries.isEmpty()) return 3; // neutral default
-        List<EnergyEntry> last = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(3)
-                .collect(Collectors.toList());
-        double avg = last.stream().mapToInt(EnergyEntry::getMood).average().orElse(3.0);
-        return (int)Math.round(avg);
+        EnergyForecaster f = stats.forecaster();
+        if (f.isWarm()) return (int) Math.round(f.predictMood());
+        return (int)Math.round(stats.prediction().averageMood());
     }
 
-    // productivity tier based on last 7 days average productivity
+    // productivity tier based on last 7 days (windows.week) average productivity
     public String productivityTier() {
         if (entries.isEmpty()) return "No data";
-        List<EnergyEntry> last = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(7)
-                .collect(Collectors.toList());
-        double avgProd = last.stream().mapToInt(EnergyEntry::getProductivity).average().orElse(0.0);
+        double avgProd = stats.week().averageProductivity();
         if (avgProd >= 4.0) return "High Performer";
         if (avgProd >= 2.5) return "Moderate Performer";
         return "Low Performer";
     }
 
-    // weekly insights: analyze last 7 entries
+    // average energy and sleep over the last 7 entries (windows.week), 0 without entries
+    public double weekAverageEnergy() {
+        return stats.week().averageScore();
+    }
+
+    public double weekAverageSleep() {
+        return stats.week().averageSleep();
+    }
+
+    // weekly insights: analyze last 7 entries (windows.week)
     public String weeklyInsights() {
         if (entries.isEmpty()) return "No data";
-        List<EnergyEntry> last = entries.stream()
-                .sorted(Comparator.comparing(EnergyEntry::getDate).reversed())
-                .limit(7)
-                .collect(Collectors.toList());
-        Collections.reverse(last);
-        StringBuilder sb = new StringBuilder();
-        sb.append("----- Weekly Insights (last ").append(last.size()).append(" days) -----\n");
-        double avgEnergy = last.stream().mapToDouble(EnergyEntry::getEnergyScore).average().orElse(0.0);
-        sb.append(String.format("Avg Energy (week): %.2f (%s)%n", avgEnergy, classifyEnergy(avgEnergy)));
-        Optional<EnergyEntry> best = last.stream().max(Comparator.comparingDouble(EnergyEntry::getEnergyScore));
-        Optional<EnergyEntry> worst = last.stream().min(Comparator.comparingDouble(EnergyEntry::getEnergyScore));
-        best.ifPresent(e -> sb.append("Best day: ").append(e.toString()).append("\n"));
-        worst.ifPresent(e -> sb.append("Worst day: ").append(e.toString()).append("\n"));
-        double avgSleep = last.stream().mapToInt(EnergyEntry::getSleepHours).average().orElse(0.0);
-        sb.append(String.format("Avg Sleep (week): %.2f hrs%n", avgSleep));
-        long caffeineSpikeDays = last.stream().filter(e -> e.getCaffeine() >= 3).count();
+        return cached("weekly", 0, () -> {
+            long t0 = System.nanoTime();
+            String report = appendWeeklyInsights(new StringBuilder()).toString();
+            EnergyMetrics.WEEKLY.record(System.nanoTime() - t0);
+            return report;
+        });
+    }
+
+    // Everything except the caffeine count is kept up to date by the rolling window;
+    // that count is one pass over the window.
+    private StringBuilder appendWeeklyInsights(StringBuilder sb) {
+        RollingWindow week = stats.week();
+        String nl = ReportFormat.NEWLINE;
+        int caffeineSpikeDays = 0;
+        for (int i = 0; i < week.size(); i++) {
+            if (week.get(i).getCaffeine() >= 3) caffeineSpikeDays++;
+        }
+        sb.append("----- Weekly Insights (last ").append(week.size()).append(" days) -----\n");
+        double avgEnergy = week.averageScore();
+        sb.append("Avg Energy (week): ");
+        ReportFormat.appendFixed(sb, avgEnergy, 2).append(" (").append(classifyEnergy(avgEnergy)).append(')').append(nl);
+        week.maxEntry().appendTo(sb.append("Best day: ")).append("\n");
+        week.minEntry().appendTo(sb.append("Worst day: ")).append("\n");
+        sb.append("Avg Sleep (week): ");
+        ReportFormat.appendFixed(sb, week.averageSleep(), 2).append(" hrs").append(nl);
         sb.append("Days with 3+ cups caffeine: ").append(caffeineSpikeDays).append("\n");
         sb.append("Productivity tier (week): ").append(productivityTier()).append("\n");
-        return sb.toString();
+        return sb;
     }
 
     // full summary (dashboard)
     public String summaryDashboard() {
-        StringBuilder sb = new StringBuilder();
+        return cached("dashboard", 0, this::renderDashboard);
+    }
+
+    // rendered into one builder
+    private String renderDashboard() {
+        long t0 = System.nanoTime();
+        StringBuilder sb = new StringBuilder(1024);
+        String nl = ReportFormat.NEWLINE;
         sb.append("========== DAILY DASHBOARD ==========\n");
         if (entries.isEmpty()) {
             sb.append("No data yet. Add today's entry first.\n");
             return sb.toString();
         }
-        EnergyEntry latest = entries.get(entries.size() - 1);
-        sb.append(String.format("Date: %s%n", latest.getDate()));
-        sb.append(String.format("Energy Score: %.2f (%s)%n", latest.getEnergyScore(), classifyEnergy(latest.getEnergyScore())));
-        sb.append(String.format("Sleep: %d hrs | Mood: %d | Productivity: %d | Caffeine: %d cups%n",
-                latest.getSleepHours(), latest.getMood(), latest.getProductivity(), latest.getCaffeine()));
+        EnergyEntry latest = entries.last();
+        sb.append("Date: ").append(latest.getDate()).append(nl);
+        sb.append("Energy Score: ");
+        ReportFormat.appendFixed(sb, latest.getEnergyScore(), 2)
+                .append(" (").append(classifyEnergy(latest.getEnergyScore())).append(')').append(nl);
+        sb.append("Sleep: ").append(latest.getSleepHours())
+                .append(" hrs | Mood: ").append(latest.getMood())
+                .append(" | Productivity: ").append(latest.getProductivity())
+                .append(" | Caffeine: ").append(latest.getCaffeine()).append(" cups").append(nl);
         sb.append("Work Type: ").append(latest.getWorkType()).append("\n");
         sb.append("Recommended deep work: ").append(recommendDeepWorkTime()).append("\n");
-        sb.append("Predicted energy tomorrow: ").append(String.format("%.2f", predictTomorrow())).append(" (").append(classifyEnergy(predictTomorrow())).append(")\n");
+        double predicted = predictTomorrow();
+        sb.append("Predicted energy tomorrow: ");
+        ReportFormat.appendFixed(sb, predicted, 2).append(" (").append(classifyEnergy(predicted)).append(")\n");
         sb.append("Mood likely tomorrow: ").append(predictMood()).append("\n");
         sb.append("Crash alert: ").append(isCrashing() ? "YES - consider rest" : "NO").append("\n");
         double corr = sleepEnergyCorrelation();
         sb.append("Sleep-Energy correlation (pearson): ");
-        if (Double.isNaN(corr)) sb.append("Insufficient data\n");
-        else sb.append(String.format("%.2f (%s)%n", corr, interpretCorrelation(corr)));
-        sb.append(asciiGraph(7));
-        sb.append(weeklyInsights());
+        if (Double.isNaN(corr)) {
+            sb.append("Insufficient data\n");
+        } else {
+            ReportFormat.appendFixed(sb, corr, 2).append(" (").append(interpretCorrelation(corr)).append(')').append(nl);
+        }
+        appendGraph(sb, 7);
+        appendWeeklyInsights(sb);
         sb.append("=====================================\n");
-        return sb.toString();
+        String report = sb.toString();
+        EnergyMetrics.DASHBOARD.record(System.nanoTime() - t0);
+        return report;
     }
 
     private String interpretCorrelation(double r) {
@@ -1,7 +1,20 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
+// File-level import/export. Exports copy with FileChannel.transferTo (the kernel
+// moves the bytes, no user-space buffer) or stream through gzip; importDirectory
+// loads one CSV per user into a TrackerRegistry through a bounded
+// reader -> parsers -> mergers pipeline. Each returns the StageStats it measured.
 public class FileManager {
+    private static final int GZIP_BUFFER = 64 * 1024;
+    private static final int QUEUE_PER_WORKER = 2; // files in flight per worker; bounds memory
 
     public static List<String[]> loadCSV(String filePath) {
         List<String[]> data = new ArrayList<>();
@@ -31,25 +44,202 @@ public class FileManager {
         }
     }
 
-    public static void exportCSV(String originalPath, String exportPath) {
-        try {
-            FileInputStream fis = new FileInputStream(originalPath);
-            FileOutputStream fos = new FileOutputStream(exportPath);
+    // Copy a data file as is; returns null (after printing why) on failure.
+    public static StageStats exportCSV(String originalPath, String exportPath) {
+        StageStats stats = new StageStats("export", 1);
+        stats.start();
+        try (FileChannel in = FileChannel.open(Paths.get(originalPath), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(Paths.get(exportPath), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long done = 0;
+            while (done < size) {
+                long n = in.transferTo(done, size - done, out);
+                if (n <= 0) throw new IOException("source shrank while copying");
+                done += n;
+            }
+            stats.finish();
+            stats.add(1, 0, 0, done, stats.wallNanos());
+            System.out.println("Data exported successfully to: " + exportPath);
+            return stats;
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Stream a data file into a gzip file; returns null (after printing why) on failure.
+    public static StageStats exportGzip(String originalPath, String exportPath) {
+        StageStats stats = new StageStats("gzip export", 1);
+        stats.start();
+        long read = 0, rows = 0;
+        try (InputStream in = Files.newInputStream(Paths.get(originalPath));
+             GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(Paths.get(exportPath)), GZIP_BUFFER) {
+                 {
+                     def.setLevel(Deflater.BEST_SPEED); // CSV still shrinks ~5x, several times faster than level 6
+                 }
+             }) {
+            byte[] buf = new byte[GZIP_BUFFER];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+                read += n;
+                for (int i = 0; i < n; i++) if (buf[i] == '\n') rows++;
+            }
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            return null;
+        }
+        stats.finish();
+        stats.add(1, rows, 0, read, stats.wallNanos());
+        long written = new File(exportPath).length();
+        System.out.printf("Data exported to: %s (%d -> %d bytes, %.1f%%)%n", exportPath, read, written,
+                read == 0 ? 100.0 : 100.0 * written / read);
+        return stats;
+    }
+
+    private static final class RawFile {
+        final String user;
+        final byte[] data;
+
+        RawFile(String user, byte[] data) {
+            this.user = user;
+            this.data = data;
+        }
+    }
+
+    private static final class ParsedFile {
+        final String user;
+        final List<EnergyEntry> entries;
+
+        ParsedFile(String user, List<EnergyEntry> entries) {
+            this.user = user;
+            this.entries = entries;
+        }
+    }
 
-            byte[] buffer = new byte[1024];
-            int length;
+    private static final RawFile NO_MORE_FILES = new RawFile(null, null);
+    private static final ParsedFile NO_MORE_PARSED = new ParsedFile(null, null);
 
-            while ((length = fis.read(buffer)) > 0) {
-                fos.write(buffer, 0, length);
+    // Import every <userId>.csv in `dir` into `registry`, one addAll per user.
+    // One thread reads files, `workers` threads parse them and `workers` more
+    // merge them (users are independent, and merging waits on fsync). The queues
+    // between the stages hold a few files each, so a slow stage throttles the
+    // ones before it instead of buffering the whole directory.
+    // Returns the reader, parser and merger stats, in that order.
+    public static List<StageStats> importDirectory(Path dir, TrackerRegistry registry, int workers)
+            throws IOException, InterruptedException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.csv")) {
+            for (Path f : ds) files.add(f);
+        }
+        Collections.sort(files);
+        int n = Math.max(1, workers);
+        BlockingQueue<RawFile> raw = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * n);
+        BlockingQueue<ParsedFile> parsed = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * n);
+        StageStats reading = new StageStats("read", 1);
+        StageStats parsing = new StageStats("parse", n);
+        StageStats merging = new StageStats("merge", n);
+        AtomicInteger parsersLeft = new AtomicInteger(n);
+
+        ExecutorService pool = Executors.newFixedThreadPool(1 + 2 * n);
+        try {
+            reading.start();
+            parsing.start();
+            merging.start();
+            pool.execute(() -> readFiles(files, raw, n, reading));
+            for (int i = 0; i < n; i++) pool.execute(() -> parseFiles(raw, parsed, parsersLeft, n, parsing));
+            List<Future<?>> mergers = new ArrayList<>();
+            for (int i = 0; i < n; i++) mergers.add(pool.submit(() -> mergeFiles(parsed, registry, merging)));
+            for (Future<?> f : mergers) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("merge failed: " + e.getCause(), e.getCause());
+                }
             }
+            merging.finish();
+        } finally {
+            pool.shutdownNow();
+        }
+        return Arrays.asList(reading, parsing, merging);
+    }
 
-            fis.close();
-            fos.close();
+    private static void readFiles(List<Path> files, BlockingQueue<RawFile> out, int parsers, StageStats stats) {
+        try {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                String user = name.substring(0, name.length() - ".csv".length());
+                if (!TrackerRegistry.isValidUserId(user)) {
+                    System.out.println("Skipped " + name + ": not a valid user id");
+                    stats.add(0, 0, 1, 0, 0);
+                    continue;
+                }
+                long t0 = System.nanoTime();
+                byte[] data;
+                try {
+                    data = Files.readAllBytes(f);
+                } catch (IOException e) {
+                    EnergyMetrics.IO_ERRORS.increment();
+                    System.out.println("Could not read " + name + ": " + e.getMessage());
+                    stats.add(0, 0, 1, 0, System.nanoTime() - t0);
+                    continue;
+                }
+                stats.add(1, 0, 0, data.length, System.nanoTime() - t0);
+                out.put(new RawFile(user, data));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stats.finish();
+            try {
+                for (int i = 0; i < parsers; i++) out.put(NO_MORE_FILES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // the pipeline is being torn down
+            }
+        }
+    }
 
-            System.out.println("Data exported successfully to: " + exportPath);
+    // the last parser to finish tells every merger to stop
+    private static void parseFiles(BlockingQueue<RawFile> in, BlockingQueue<ParsedFile> out,
+                                   AtomicInteger parsersLeft, int mergers, StageStats stats) {
+        EnergyCsvParser parser = new EnergyCsvParser();
+        try {
+            while (true) {
+                RawFile f = in.take();
+                if (f == NO_MORE_FILES) break;
+                long t0 = System.nanoTime();
+                List<EnergyEntry> entries = new ArrayList<>();
+                int[] rejected = {0};
+                parser.parse(f.data, 0, f.data.length, 1,
+                        (line, day, s, m, p, c, wt, pt, score) ->
+                                entries.add(EnergyEntry.of(LocalDate.ofEpochDay(day), s, m, p, c, wt, pt, score)),
+                        (line, reason) -> rejected[0]++);
+                stats.add(1, entries.size(), rejected[0], f.data.length, System.nanoTime() - t0);
+                out.put(new ParsedFile(f.user, entries));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (parsersLeft.decrementAndGet() == 0) {
+                stats.finish();
+                try {
+                    for (int i = 0; i < mergers; i++) out.put(NO_MORE_PARSED);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            System.out.println("Export failed: " + e.getMessage());
+    private static Void mergeFiles(BlockingQueue<ParsedFile> in, TrackerRegistry registry, StageStats stats)
+            throws InterruptedException {
+        while (true) {
+            ParsedFile f = in.take();
+            if (f == NO_MORE_PARSED) return null;
+            long t0 = System.nanoTime();
+            ImportResult r = registry.write(f.user, t -> t.addAll(f.entries));
+            stats.add(1, r.getImported(), 0, 0, System.nanoTime() - t0);
         }
     }
 }
@@ -0,0 +1,125 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+// Walk-forward backtest for EnergyForecaster: replays a history day by day,
+// forecasts each day from the days before it, then learns it. Reports the
+// error against the old 3-day average and a same-as-yesterday forecast, and
+// update/predict throughput.
+//
+// Usage: java ForecastBacktest [file]           default: energy_data.csv (.csv or .bin)
+//        java ForecastBacktest --synthetic [days] generated history, default 5000 days
+public class ForecastBacktest {
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    // results land here so the JIT cannot drop the work
+    private static volatile double sink;
+
+    private static final class Errors {
+        final String name;
+        double energyAbs, energySq, moodAbs;
+        int n;
+
+        Errors(String name) {
+            this.name = name;
+        }
+
+        void add(double energy, double mood, EnergyEntry actual) {
+            double e = energy - actual.getEnergyScore();
+            energyAbs += Math.abs(e);
+            energySq += e * e;
+            moodAbs += Math.abs(Math.round(mood) - actual.getMood());
+            n++;
+        }
+
+        void print() {
+            System.out.printf("%-24s %12.3f %12.3f %12.3f%n", name,
+                    energyAbs / n, Math.sqrt(energySq / n), moodAbs / n);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<EnergyEntry> history;
+        String source;
+        if (args.length > 0 && args[0].equals("--synthetic")) {
+            int days = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+            history = synthetic(days);
+            source = "synthetic";
+        } else {
+            source = args.length > 0 ? args[0] : "energy_data.csv";
+            EnergyIndex index = new EnergyIndex();
+            EnergyStore.forFile(source).load(index::upsert, (line, reason) -> { });
+            history = new ArrayList<>(index.values());
+        }
+        System.out.println("history: " + history.size() + " days (" + source + ")");
+
+        EnergyForecaster model = new EnergyForecaster();
+        RollingWindow recent = new RollingWindow(WindowSizes.DEFAULT.prediction);
+        Errors regression = new Errors("weighted regression");
+        Errors average = new Errors(WindowSizes.DEFAULT.prediction + "-day average");
+        Errors yesterday = new Errors("same as yesterday");
+        EnergyEntry previous = null;
+        for (EnergyEntry e : history) {
+            if (model.isWarm()) {
+                regression.add(model.predictEnergy(), model.predictMood(), e);
+                average.add(recent.averageScore(), recent.averageMood(), e);
+                yesterday.add(previous.getEnergyScore(), previous.getMood(), e);
+            }
+            model.append(e);
+            recent.push(e);
+            previous = e;
+        }
+        if (regression.n == 0) {
+            System.out.println("Not enough days to score (the model needs " + EnergyForecaster.WARMUP + ")");
+            return;
+        }
+        System.out.println("walk-forward error over " + regression.n + " days:");
+        System.out.printf("%-24s %12s %12s %12s%n", "forecast", "energy MAE", "energy RMSE", "mood MAE");
+        regression.print();
+        average.print();
+        yesterday.print();
+
+        // throughput: replay the whole history repeatedly, then predict repeatedly
+        long days = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < MEASURE_NANOS) {
+            model.reset();
+            for (EnergyEntry e : history) model.append(e);
+            days += history.size();
+        }
+        double updateNanos = (double) (System.nanoTime() - start) / days;
+        long predictions = 0;
+        start = System.nanoTime();
+        double acc = 0;
+        while (System.nanoTime() - start < MEASURE_NANOS) {
+            for (int i = 0; i < 10_000; i++) acc += model.predictEnergy();
+            predictions += 10_000;
+        }
+        sink = acc;
+        double predictNanos = (double) (System.nanoTime() - start) / predictions;
+        System.out.printf("update: %.0f ns/day (%.0f days/s), predict: %.0f ns%n",
+                updateNanos, 1e9 / updateNanos, predictNanos);
+    }
+
+    // Sleep drifts around a weekly rhythm, short nights bring more coffee and a
+    // worse mood next day, work type follows the weekday.
+    private static List<EnergyEntry> synthetic(int days) {
+        Random r = new Random(days);
+        List<EnergyEntry> out = new ArrayList<>(days);
+        LocalDate d = LocalDate.of(2024, 1, 1).minusDays(days);
+        double sleep = 7;
+        int mood = 3;
+        for (int i = 0; i < days; i++) {
+            boolean weekend = d.getDayOfWeek() == DayOfWeek.SATURDAY || d.getDayOfWeek() == DayOfWeek.SUNDAY;
+            sleep = 0.7 * sleep + 0.3 * (weekend ? 8.5 : 6.5) + r.nextGaussian();
+            int hours = (int) Math.max(0, Math.min(12, Math.round(sleep)));
+            int caffeine = Math.max(0, (int) Math.round(3 - (hours - 7) * 0.8 + r.nextGaussian() * 0.7));
+            mood = (int) Math.max(1, Math.min(5, Math.round(0.5 * mood + 0.3 * (hours - 4) + r.nextGaussian() * 0.7)));
+            int productivity = (int) Math.max(1, Math.min(5, Math.round(mood + (weekend ? -1 : 0.5) + r.nextGaussian())));
+            String workType = weekend ? "Physical" : (d.getDayOfWeek().getValue() % 2 == 0 ? "Study" : "Creative");
+            out.add(new EnergyEntry(d, hours, mood, productivity, caffeine, workType, "MAN".substring(i % 3, i % 3 + 1)));
+            d = d.plusDays(1);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,76 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// Whole-history totals written next to a CSV snapshot (<file>.summary) each
+// time a lazily opened tracker saves it, so the next lazy open can answer
+// averageEnergy and recommendDeepWorkTime before the full file is loaded. It
+// records the snapshot's size and modification time and is ignored once the
+// file no longer matches them.
+public class HistorySummary {
+    private final int count;
+    private final double averageScore;
+    private final double averageSleep;
+    private final Map<String, Long> topHalfPeaks;
+
+    private HistorySummary(int count, double averageScore, double averageSleep, Map<String, Long> topHalfPeaks) {
+        this.count = count;
+        this.averageScore = averageScore;
+        this.averageSleep = averageSleep;
+        this.topHalfPeaks = Collections.unmodifiableMap(topHalfPeaks);
+    }
+
+    public static HistorySummary of(EnergyAggregates stats) {
+        return new HistorySummary(stats.count(), stats.averageScore(), stats.averageSleep(),
+                new HashMap<>(stats.topHalfPeakCounts()));
+    }
+
+    public int count() { return count; }
+    public double averageScore() { return averageScore; }
+    public double averageSleep() { return averageSleep; }
+    public Map<String, Long> topHalfPeakCounts() { return topHalfPeaks; }
+
+    static Path sidecar(Path data) {
+        return data.resolveSibling(data.getFileName() + ".summary");
+    }
+
+    // Call right after `data` was saved; no fsync, a torn or stale file is simply not used.
+    public void write(Path data) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("size", Long.toString(Files.size(data)));
+        p.setProperty("modified", Long.toString(Files.getLastModifiedTime(data).toMillis()));
+        p.setProperty("count", Integer.toString(count));
+        p.setProperty("averageScore", Double.toString(averageScore));
+        p.setProperty("averageSleep", Double.toString(averageSleep));
+        for (Map.Entry<String, Long> e : topHalfPeaks.entrySet()) {
+            p.setProperty("peak." + e.getKey(), Long.toString(e.getValue()));
+        }
+        try (OutputStream out = Files.newOutputStream(sidecar(data))) {
+            p.store(out, "energy history summary");
+        }
+    }
+
+    // The summary for `data` as it is now, or null if there is none or it is out of date.
+    public static HistorySummary read(Path data) {
+        Path file = sidecar(data);
+        if (!Files.exists(file)) return null;
+        try (InputStream in = Files.newInputStream(file)) {
+            Properties p = new Properties();
+            p.load(in);
+            if (Long.parseLong(p.getProperty("size")) != Files.size(data)
+                    || Long.parseLong(p.getProperty("modified")) != Files.getLastModifiedTime(data).toMillis()) {
+                return null;
+            }
+            Map<String, Long> peaks = new HashMap<>();
+            for (String key : p.stringPropertyNames()) {
+                if (key.startsWith("peak.")) peaks.put(key.substring(5), Long.parseLong(p.getProperty(key)));
+            }
+            return new HistorySummary(Integer.parseInt(p.getProperty("count")),
+                    Double.parseDouble(p.getProperty("averageScore")),
+                    Double.parseDouble(p.getProperty("averageSleep")), peaks);
+        } catch (IOException | RuntimeException e) {
+            return null; // missing keys, torn write: fall back to loading the history
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// Outcome of a bulk import into an EnergyTracker.
+public class ImportResult {
+    private final int received;   // rows parsed successfully
+    private final int imported;   // distinct dates written
+    private final int rejected;   // rows that could not be parsed
+    private final long elapsedNanos;
+
+    public ImportResult(int received, int imported, int rejected, long elapsedNanos) {
+        this.received = received;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getReceived() { return received; }
+    public int getImported() { return imported; }
+    public int getRejected() { return rejected; }
+    // rows that lost to a later row for the same date in the same batch
+    public int getDuplicates() { return received - imported; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    // input rows (good and bad) handled per second
+    public double rowsPerSecond() {
+        if (elapsedNanos <= 0) return 0.0;
+        return (received + rejected) * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d entries (%d duplicate dates collapsed, %d rows rejected) in %.1f ms, %.0f rows/s",
+                imported, getDuplicates(), rejected, elapsedNanos / 1e6, rowsPerSecond());
+    }
+}
@@ -81,10 +81,84 @@ public class InsightGenerator {
         int count = 0;
 
         for (EnergyEntry e : entries) {
-            if (e.getCaffeineIntake() >= 3) {
+            if (e.getCaffeine() >= 3) {
                 count++;
             }
         }
         return count;
     }
+
+    // Columnar variants: same answers, computed by ParallelStats kernels that
+    // split long histories across the fork-join pool.
+
+    public static String bestEnergyDay(EnergyColumns cols) {
+        if (cols.size() == 0) return "No data";
+
+        int best = ParallelStats.argMax(cols.scoreArray(), 0, cols.size());
+        return java.time.LocalDate.ofEpochDay(cols.epochDay(best)) + " (" + cols.score(best) + ")";
+    }
+
+    public static String worstEnergyDay(EnergyColumns cols) {
+        if (cols.size() == 0) return "No data";
+
+        int worst = ParallelStats.argMin(cols.scoreArray(), 0, cols.size());
+        return java.time.LocalDate.ofEpochDay(cols.epochDay(worst)) + " (" + cols.score(worst) + ")";
+    }
+
+    public static double averageSleep(EnergyColumns cols) {
+        return ParallelStats.mean(cols.sleepArray(), 0, cols.size());
+    }
+
+    public static double averageMood(EnergyColumns cols) {
+        return ParallelStats.mean(cols.moodArray(), 0, cols.size());
+    }
+
+    public static double averageProductivity(EnergyColumns cols) {
+        return ParallelStats.mean(cols.productivityArray(), 0, cols.size());
+    }
+
+    public static String mostCommonPeakTime(EnergyColumns cols) {
+        if (cols.size() == 0) return "No data";
+
+        int[] counts = ParallelStats.histogram(cols.peakTimeArray(), 0, cols.size(), cols.peakTimeCount());
+
+        int best = 0;
+        for (int code = 1; code < counts.length; code++) {
+            if (counts[code] > counts[best]) {
+                best = code;
+            }
+        }
+        return cols.peakTimeName(best);
+    }
+
+    public static int highCaffeineDays(EnergyColumns cols) {
+        return (int) ParallelStats.countAtLeast(cols.caffeineArray(), 0, cols.size(), 3);
+    }
+
+    // Pearson correlation of sleep hours against energy score over the whole history
+    public static double sleepEnergyCorrelation(EnergyColumns cols) {
+        if (cols.size() < 2) return 0;
+
+        return ParallelStats.moments(cols.sleepArray(), cols.scoreArray(), 0, cols.size()).correlation();
+    }
+
+    // Bitmap-index variants: counted from EnergyTracker.query() without scanning the rows.
+
+    public static String mostCommonPeakTime(EnergyQuery q) {
+        Map<String, Integer> counts = q.groupBy(EnergyQuery.Field.PEAK_TIME, EnergyQuery.all());
+        return counts.isEmpty() ? "No data" : counts.keySet().iterator().next();
+    }
+
+    public static int highCaffeineDays(EnergyQuery q) {
+        return q.count(EnergyQuery.atLeast(EnergyQuery.Field.CAFFEINE, 3));
+    }
+
+    // most common peak time among the top half of days by energy score
+    public static String topHalfPeakTime(EnergyQuery q) {
+        int days = q.count(EnergyQuery.all());
+        if (days == 0) return "No data";
+
+        Map<String, Integer> counts = q.groupBy(EnergyQuery.Field.PEAK_TIME, EnergyQuery.topScores(Math.max(1, days / 2)));
+        return counts.isEmpty() ? "No data" : counts.keySet().iterator().next();
+    }
 }
@@ -0,0 +1,86 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram with log-linear buckets (HDR style): every power
+// of two is split into 8 equal buckets, so any recorded value is reported within
+// 12.5% of its true value, from 1 ns up to Long.MAX_VALUE.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    // values below SUB get a bucket each; above that, SUB buckets per power of two
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) - SUB;
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    // largest value that lands in bucket i
+    static long upperBound(int i) {
+        if (i < SUB) return i;
+        int exp = i / SUB + SUB_BITS - 1;
+        if (exp >= 63) return Long.MAX_VALUE; // past any positive long
+        long width = 1L << (exp - SUB_BITS);
+        long lower = (SUB + i % SUB) * width;
+        return lower + (width - 1);
+    }
+
+    public long count() { return count.sum(); }
+    public long max() { return max.get(); }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) total.sum() / n;
+    }
+
+    // Upper bound of the bucket holding the p-th percentile (0 < p <= 100), capped at the max seen.
+    public long percentile(double p) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    // "name n=... mean=... p50=... p99=... max=..." with times in microseconds
+    public String summary() {
+        return String.format("%s n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", name, count(),
+                mean() / 1e3, percentile(50) / 1e3, percentile(99) / 1e3, max() / 1e3);
+    }
+}
@@ -0,0 +1,60 @@
+// Weighted sum of the inputs, floored at 0. STANDARD is the original formula
+// (Sleep * 2) + (Mood * 3) + (Productivity * 3) - (Caffeine * 1); DEFAULT, used for
+// new entries, can be changed with -Denergy.weights=sleep,mood,productivity,caffeine.
+public final class LinearScoringModel implements ScoringModel {
+    public static final LinearScoringModel STANDARD = new LinearScoringModel(2, 3, 3, -1);
+    public static final LinearScoringModel DEFAULT = configured(System.getProperty("energy.weights"));
+
+    private final double sleepWeight, moodWeight, productivityWeight, caffeineWeight;
+
+    public LinearScoringModel(double sleepWeight, double moodWeight, double productivityWeight, double caffeineWeight) {
+        this.sleepWeight = sleepWeight;
+        this.moodWeight = moodWeight;
+        this.productivityWeight = productivityWeight;
+        this.caffeineWeight = caffeineWeight;
+    }
+
+    // "2,3,3,-1"; throws IllegalArgumentException unless there are exactly four numbers
+    public static LinearScoringModel parse(String weights) {
+        String[] p = weights.split(",");
+        if (p.length != 4) throw new IllegalArgumentException("expected 4 weights, got " + p.length);
+        double[] w = new double[4];
+        for (int i = 0; i < 4; i++) w[i] = Double.parseDouble(p[i].trim());
+        return new LinearScoringModel(w[0], w[1], w[2], w[3]);
+    }
+
+    private static LinearScoringModel configured(String weights) {
+        if (weights == null) return STANDARD;
+        try {
+            return parse(weights);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring energy.weights: " + e.getMessage());
+            return STANDARD;
+        }
+    }
+
+    @Override
+    public double score(int sleepHours, int mood, int productivity, int caffeine) {
+        double score = sleepHours * sleepWeight + mood * moodWeight
+                + productivity * productivityWeight + caffeine * caffeineWeight;
+        return Math.max(score, 0.0);
+    }
+
+    // Same arithmetic as score(), as one counted loop with no calls or branches,
+    // which C2's superword pass can turn into SIMD code.
+    @Override
+    public void score(int[] sleep, int[] mood, int[] productivity, int[] caffeine, double[] out) {
+        double ws = sleepWeight, wm = moodWeight, wp = productivityWeight, wc = caffeineWeight;
+        int n = out.length;
+        for (int i = 0; i < n; i++) {
+            double score = sleep[i] * ws + mood[i] * wm + productivity[i] * wp + caffeine[i] * wc;
+            out[i] = Math.max(score, 0.0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "linear(sleep=" + sleepWeight + ", mood=" + moodWeight
+                + ", productivity=" + productivityWeight + ", caffeine=" + caffeineWeight + ")";
+    }
+}
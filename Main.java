@@ -5,8 +5,41 @@ public class Main {
     private static final String DATA_FILE = "energy_data.csv";
 
     public static void main(String[] args) {
+        if (args.length == 3 && args[0].equals("convert")) {
+            convert(args[1], args[2]);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("import")) {
+            importFile(args[1]);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("export-gz")) {
+            exportGzip(args[1]);
+            return;
+        }
+        if ((args.length == 2 || args.length == 3) && args[0].equals("import-dir")) {
+            importDirectory(args[1], args.length == 3 ? args[2] : "users");
+            return;
+        }
+        if ((args.length == 3 || args.length == 4) && args[0].equals("graph")) {
+            rangeGraph(args[1], args[2], args.length == 4 ? args[3] : "60");
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("query")) {
+            query(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length >= 2 && args.length <= 3 && args[0].equals("whatif")) {
+            whatIf(args[1], args.length == 3 ? args[2] : null);
+            return;
+        }
+        if (args.length == 1 && args[0].equals("rescore")) {
+            rescore();
+            return;
+        }
         Scanner sc = new Scanner(System.in);
-        EnergyTracker tracker = new EnergyTracker(DATA_FILE);
+        // only the recent days are read up front, the rest of the history follows in the background
+        EnergyTracker tracker = EnergyTracker.openLazy(DATA_FILE, true);
 
         System.out.println("=== Human Energy Pattern Predictor (Upgraded) ===");
         while (true) {
@@ -42,6 +75,7 @@ public class Main {
                     exportCopy(tracker);
                     break;
                 case "7":
+                    tracker.close();
                     System.out.println("Bye.");
                     sc.close();
                     return;
@@ -82,20 +116,139 @@ public class Main {
         }
     }
 
+    // java Main import history.csv: merge a whole file into the data file in one go
+    private static void importFile(String filename) {
+        if (!new java.io.File(filename).exists()) {
+            System.out.println("No such file: " + filename);
+            return;
+        }
+        EnergyTracker tracker = new EnergyTracker(DATA_FILE, true);
+        ImportResult result = tracker.importFile(filename);
+        tracker.close();
+        System.out.println(result);
+    }
+
+    // java [-Denergy.weights=2,3,3,-1] Main rescore: apply the configured weights to the whole history
+    private static void rescore() {
+        EnergyTracker tracker = new EnergyTracker(DATA_FILE, true);
+        long t0 = System.nanoTime();
+        int changed = tracker.rescore(LinearScoringModel.DEFAULT);
+        long micros = (System.nanoTime() - t0) / 1000;
+        tracker.close();
+        System.out.println("Re-scored " + tracker.size() + " entries with " + LinearScoringModel.DEFAULT
+                + ": " + changed + " changed (" + micros + " us)");
+    }
+
+    // java Main graph 2015-01-01 2024-12-31 [60]: long ranges come out as weekly/monthly/yearly bars
+    private static void rangeGraph(String from, String to, String width) {
+        try {
+            EnergyTracker tracker = EnergyTracker.openLazy(DATA_FILE, true);
+            System.out.println(tracker.rangeGraph(LocalDate.parse(from), LocalDate.parse(to), Integer.parseInt(width)));
+            tracker.close();
+        } catch (Exception e) {
+            System.out.println("Graph failed: " + e.getMessage());
+        }
+    }
+
+    // java Main query caffeine>=3 workType=Study,Creative [by=peakTime] [top=5]
+    // filters are ANDed; prints the matching days, their counts per value of `by`, or the best `top`
+    private static void query(String[] args) {
+        try {
+            java.util.List<EnergyQuery.Filter> filters = new java.util.ArrayList<>();
+            EnergyQuery.Field by = null;
+            int top = -1;
+            for (String a : args) {
+                if (a.startsWith("by=")) by = EnergyQuery.Field.parse(a.substring(3));
+                else if (a.startsWith("top=")) top = Integer.parseInt(a.substring(4));
+                else filters.add(EnergyQuery.parse(a));
+            }
+            EnergyTracker tracker = EnergyTracker.openLazy(DATA_FILE, true);
+            long t0 = System.nanoTime();
+            EnergyQuery q = tracker.query();
+            EnergyQuery.Filter where = EnergyQuery.and(filters.toArray(new EnergyQuery.Filter[0]));
+            if (by != null) {
+                for (java.util.Map.Entry<String, Integer> g : q.groupBy(by, where).entrySet()) {
+                    System.out.println(by + "=" + g.getKey() + ": " + g.getValue());
+                }
+            } else if (top >= 0) {
+                q.top(where, top).forEach(System.out::println);
+            } else {
+                q.select(where).forEach(System.out::println);
+            }
+            System.out.println(q.count(where) + " matching days (" + (System.nanoTime() - t0) / 1000 + " us)");
+            tracker.close();
+        } catch (Exception e) {
+            System.out.println("Query failed: " + e.getMessage());
+        }
+    }
+
+    // java Main whatif sleep=6,caffeine=4[,days=7] [trajectories]: percentile bands from
+    // Monte Carlo runs over the history; leave out sleep or caffeine to keep it as usual
+    private static void whatIf(String spec, String trajectories) {
+        try {
+            EnergySimulator.Scenario scenario = EnergySimulator.Scenario.parse(spec);
+            EnergyTracker tracker = EnergyTracker.openLazy(DATA_FILE, true);
+            EnergySimulator sim = tracker.simulator();
+            tracker.close();
+            int n = trajectories == null ? EnergySimulator.DEFAULT_TRAJECTORIES : Integer.parseInt(trajectories);
+            // an explicit count runs to the end, the default keeps to the interactive budget
+            long budget = trajectories == null ? EnergySimulator.DEFAULT_BUDGET_MILLIS : 0;
+            System.out.println(sim.run(scenario, n, budget, System.nanoTime()));
+        } catch (Exception e) {
+            System.out.println("What-if failed: " + e.getMessage());
+        }
+    }
+
+    // java Main convert energy_data.csv energy_data.bin (either direction)
+    private static void convert(String from, String to) {
+        try {
+            int n = EnergyStore.convert(EnergyStore.forFile(from), EnergyStore.forFile(to));
+            System.out.println("Converted " + n + " entries: " + from + " -> " + to);
+        } catch (Exception e) {
+            System.out.println("Convert failed: " + e.getMessage());
+        }
+    }
+
     private static void exportCopy(EnergyTracker tracker) {
-        // export the CSV to a timestamped copy
+        // export the data file to a timestamped copy beside it
+        tracker.compact(); // make sure journaled entries are in the snapshot
+        java.nio.file.Path src = tracker.getPath();
+        if (!java.nio.file.Files.exists(src)) {
+            System.out.println("No data file to export.");
+            return;
+        }
+        String name = src.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String destName = (dot < 0 ? name : name.substring(0, dot)) + "_copy_" + LocalDate.now()
+                + (dot < 0 ? "" : name.substring(dot));
+        StageStats stats = FileManager.exportCSV(src.toString(), src.resolveSibling(destName).toString());
+        if (stats != null) System.out.println(stats);
+    }
+
+    // java Main export-gz energy_data.csv.gz
+    private static void exportGzip(String dest) {
+        EnergyTracker tracker = new EnergyTracker(DATA_FILE, true);
+        tracker.close(); // folds the journal into the snapshot
+        if (!java.nio.file.Files.exists(tracker.getPath())) {
+            System.out.println("No data file to export.");
+            return;
+        }
+        StageStats stats = FileManager.exportGzip(tracker.getPath().toString(), dest);
+        if (stats != null) System.out.println(stats);
+    }
+
+    // java Main import-dir exports/ [users]: every <userId>.csv into that user's file in the data directory
+    private static void importDirectory(String dir, String dataDir) {
         try {
-            java.nio.file.Path src = java.nio.file.Paths.get("energy_data.csv");
-            if (!java.nio.file.Files.exists(src)) {
-                System.out.println("No data file to export.");
-                return;
+            java.nio.file.Files.createDirectories(java.nio.file.Paths.get(dataDir));
+            try (TrackerRegistry registry = new TrackerRegistry(java.nio.file.Paths.get(dataDir), 256L * 1024 * 1024)) {
+                int workers = Math.max(2, Runtime.getRuntime().availableProcessors());
+                for (StageStats s : FileManager.importDirectory(java.nio.file.Paths.get(dir), registry, workers)) {
+                    System.out.println(s);
+                }
             }
-            String destName = "energy_data_copy_" + java.time.LocalDate.now() + ".csv";
-            java.nio.file.Path dest = java.nio.file.Paths.get(destName);
-            java.nio.file.Files.copy(src, dest, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("Exported copy to: " + destName);
         } catch (Exception e) {
-            System.out.println("Export failed: " + e.getMessage());
+            System.out.println("Import failed: " + e.getMessage());
         }
     }
 }
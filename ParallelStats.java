@@ -0,0 +1,191 @@
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+// Fork-join kernels over primitive columns, for reports over long histories.
+// Each kernel splits [from, to) in halves until a chunk is small enough, scans
+// chunks sequentially and merges partial results (sums, counts, arg-extremes,
+// co-moments). Short ranges never leave the calling thread.
+// Integer results are exactly what a sequential loop gives; co-moments agree
+// with a two-pass loop up to rounding.
+public class ParallelStats {
+    // below this many elements a chunk is scanned in place
+    static final int CHUNK = 1 << 15;
+
+    interface RangeFunction<R> {
+        R apply(int from, int to);
+    }
+
+    private static class Split<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final transient RangeFunction<R> leaf;
+        private final transient BinaryOperator<R> merge;
+
+        Split(int from, int to, RangeFunction<R> leaf, BinaryOperator<R> merge) {
+            this.from = from;
+            this.to = to;
+            this.leaf = leaf;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= CHUNK) return leaf.apply(from, to);
+            int mid = (from + to) >>> 1;
+            Split<R> left = new Split<>(from, mid, leaf, merge);
+            left.fork();
+            R right = new Split<>(mid, to, leaf, merge).compute();
+            return merge.apply(left.join(), right); // left first, so merges see chunks in order
+        }
+    }
+
+    static <R> R reduce(int from, int to, RangeFunction<R> leaf, BinaryOperator<R> merge) {
+        if (to - from <= CHUNK) return leaf.apply(from, to);
+        return new Split<>(from, to, leaf, merge).invoke();
+    }
+
+    public static long sum(int[] a, int from, int to) {
+        return reduce(from, to, (f, t) -> {
+            long s = 0;
+            for (int i = f; i < t; i++) s += a[i];
+            return s;
+        }, Long::sum);
+    }
+
+    public static double mean(int[] a, int from, int to) {
+        if (to <= from) return 0;
+        return (double) sum(a, from, to) / (to - from);
+    }
+
+    public static long countAtLeast(int[] a, int from, int to, int threshold) {
+        return reduce(from, to, (f, t) -> {
+            long n = 0;
+            for (int i = f; i < t; i++) if (a[i] >= threshold) n++;
+            return n;
+        }, Long::sum);
+    }
+
+    // occurrences of each code 0..buckets-1
+    public static int[] histogram(int[] codes, int from, int to, int buckets) {
+        return reduce(from, to, (f, t) -> {
+            int[] h = new int[buckets];
+            for (int i = f; i < t; i++) h[codes[i]]++;
+            return h;
+        }, (x, y) -> {
+            for (int i = 0; i < buckets; i++) x[i] += y[i];
+            return x;
+        });
+    }
+
+    // Index of the highest value, same as the sequential scan
+    //   best = from; for i: if (a[i] > a[best]) best = i;
+    // i.e. the first maximum, with NaN never winning unless it sits at `from`. -1 for an empty range.
+    public static int argMax(double[] a, int from, int to) {
+        return argExtreme(a, from, to, true);
+    }
+
+    // Index of the lowest value, first one on ties (the `<` counterpart of argMax).
+    public static int argMin(double[] a, int from, int to) {
+        return argExtreme(a, from, to, false);
+    }
+
+    private static int argExtreme(double[] a, int from, int to, boolean max) {
+        if (to <= from) return -1;
+        if (Double.isNaN(a[from])) return from;
+        // chunks report their first extreme among non-NaN values, or -1
+        Integer best = reduce(from, to, (f, t) -> {
+            int b = -1;
+            for (int i = f; i < t; i++) {
+                if (Double.isNaN(a[i])) continue;
+                if (b < 0 || (max ? a[i] > a[b] : a[i] < a[b])) b = i;
+            }
+            return b;
+        }, (l, r) -> {
+            if (l < 0) return r;
+            if (r < 0) return l;
+            return (max ? a[r] > a[l] : a[r] < a[l]) ? r : l;
+        });
+        return best;
+    }
+
+    // Count, means, second moments and co-moment of paired samples.
+    // Partial results merge exactly as if the samples had been seen together
+    // (Chan et al.'s pairwise update).
+    public static class Moments {
+        public final long n;
+        public final double meanX, meanY, m2X, m2Y, cXY;
+
+        Moments(long n, double meanX, double meanY, double m2X, double m2Y, double cXY) {
+            this.n = n;
+            this.meanX = meanX;
+            this.meanY = meanY;
+            this.m2X = m2X;
+            this.m2Y = m2Y;
+            this.cXY = cXY;
+        }
+
+        Moments merge(Moments o) {
+            if (n == 0) return o;
+            if (o.n == 0) return this;
+            long total = n + o.n;
+            double dx = o.meanX - meanX;
+            double dy = o.meanY - meanY;
+            double w = (double) n * o.n / total;
+            return new Moments(total,
+                    meanX + dx * o.n / total,
+                    meanY + dy * o.n / total,
+                    m2X + o.m2X + dx * dx * w,
+                    m2Y + o.m2Y + dy * dy * w,
+                    cXY + o.cXY + dx * dy * w);
+        }
+
+        // Pearson r; 0 when either side is flat, as StatisticsUtil.correlation
+        public double correlation() {
+            double den = Math.sqrt(m2X * m2Y);
+            return den == 0 ? 0 : cXY / den;
+        }
+    }
+
+    public static Moments moments(int[] x, int[] y, int from, int to) {
+        return reduce(from, to, (f, t) -> {
+            int n = t - f;
+            if (n == 0) return new Moments(0, 0, 0, 0, 0, 0);
+            long sx = 0, sy = 0;
+            for (int i = f; i < t; i++) {
+                sx += x[i];
+                sy += y[i];
+            }
+            double mx = (double) sx / n, my = (double) sy / n;
+            double m2x = 0, m2y = 0, c = 0;
+            for (int i = f; i < t; i++) {
+                double dx = x[i] - mx, dy = y[i] - my;
+                m2x += dx * dx;
+                m2y += dy * dy;
+                c += dx * dy;
+            }
+            return new Moments(n, mx, my, m2x, m2y, c);
+        }, Moments::merge);
+    }
+
+    public static Moments moments(int[] x, double[] y, int from, int to) {
+        return reduce(from, to, (f, t) -> {
+            int n = t - f;
+            if (n == 0) return new Moments(0, 0, 0, 0, 0, 0);
+            long sx = 0;
+            double sy = 0;
+            for (int i = f; i < t; i++) {
+                sx += x[i];
+                sy += y[i];
+            }
+            double mx = (double) sx / n, my = sy / n;
+            double m2x = 0, m2y = 0, c = 0;
+            for (int i = f; i < t; i++) {
+                double dx = x[i] - mx, dy = y[i] - my;
+                m2x += dx * dx;
+                m2y += dy * dy;
+                c += dx * dy;
+            }
+            return new Moments(n, mx, my, m2x, m2y, c);
+        }, Moments::merge);
+    }
+}
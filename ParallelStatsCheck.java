@@ -0,0 +1,163 @@
+import java.time.LocalDate;
+import java.util.*;
+
+// Randomized check that the ParallelStats kernels, and the columnar
+// InsightGenerator variants built on them, give the same answers as the
+// sequential List versions. Every trial draws a history longer than
+// ParallelStats.CHUNK (so the fork-join path runs) with few distinct scores for
+// plenty of ties, sometimes with NaN scores, and compares argMax/argMin,
+// histogram, countAtLeast, the means and the correlation over the whole
+// history and over random sub-ranges.
+//
+// Usage: java ParallelStatsCheck [trials] [seed]      default: 50 trials, random seed
+//        java ParallelStatsCheck --replay <trial seed>  rerun one failing trial
+// Every trial draws from its own seed, taken from the run's seed. Prints each
+// mismatch with the failing trial's seed and parameters and exits with status 1
+// if there was any. The Maven build runs 20 trials in the test phase.
+public class ParallelStatsCheck {
+    private static final String[] PEAKS = {"M", "A", "N", ""};
+    private static final double EPSILON = 1e-9; // correlations differ only by rounding
+
+    private static int checks, failures;
+
+    public static void main(String[] args) {
+        if (args.length == 2 && args[0].equals("--replay")) {
+            long seed = Long.parseLong(args[1]);
+            trial(seed, 0);
+        } else {
+            int trials = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+            long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+            System.out.println("seed " + seed);
+            Random seeds = new Random(seed);
+            for (int t = 0; t < trials; t++) trial(seeds.nextLong(), t);
+        }
+        System.out.println(checks + " checks, " + failures + " failed");
+        if (failures > 0) System.exit(1);
+    }
+
+    // a trial is fully determined by its seed, so --replay reruns exactly this
+    private static void trial(long seed, int t) {
+        Random r = new Random(seed);
+        int n = ParallelStats.CHUNK + 1 + r.nextInt(3 * ParallelStats.CHUNK);
+        boolean nans = r.nextInt(3) == 0;
+        boolean nanFirst = r.nextInt(5) == 0;
+        int failed = failures;
+        trial(r, t, n, nans, nanFirst);
+        if (failures > failed) {
+            System.out.println("FAILED trial " + t + ": seed " + seed + ", n=" + n + ", nans=" + nans
+                    + ", nanFirst=" + nanFirst + "; replay with java ParallelStatsCheck --replay " + seed);
+        }
+    }
+
+    private static void trial(Random r, int t, int n, boolean nans, boolean nanFirst) {
+        List<EnergyEntry> entries = history(r, n, nans, nanFirst);
+        EnergyColumns cols = EnergyColumns.of(entries);
+        String label = "trial " + t + " (" + n + " rows" + (nans ? ", NaN" : "") + ")";
+
+        same(label + " bestEnergyDay", InsightGenerator.bestEnergyDay(entries), InsightGenerator.bestEnergyDay(cols));
+        same(label + " worstEnergyDay", InsightGenerator.worstEnergyDay(entries), InsightGenerator.worstEnergyDay(cols));
+        same(label + " highCaffeineDays", InsightGenerator.highCaffeineDays(entries), InsightGenerator.highCaffeineDays(cols));
+        same(label + " averageSleep", InsightGenerator.averageSleep(entries), InsightGenerator.averageSleep(cols));
+        same(label + " averageMood", InsightGenerator.averageMood(entries), InsightGenerator.averageMood(cols));
+        same(label + " averageProductivity", InsightGenerator.averageProductivity(entries),
+                InsightGenerator.averageProductivity(cols));
+
+        // the List version breaks ties in HashMap order, so compare the counts behind it
+        Map<String, Integer> peaks = new HashMap<>();
+        for (EnergyEntry e : entries) peaks.merge(e.getPeakTime(), 1, Integer::sum);
+        int[] histogram = ParallelStats.histogram(cols.peakTimeArray(), 0, cols.size(), cols.peakTimeCount());
+        Map<String, Integer> fromHistogram = new HashMap<>();
+        for (int code = 0; code < histogram.length; code++) fromHistogram.put(cols.peakTimeName(code), histogram[code]);
+        same(label + " peak time histogram", peaks, fromHistogram);
+        if (Collections.frequency(peaks.values(), Collections.max(peaks.values())) == 1) {
+            same(label + " mostCommonPeakTime", InsightGenerator.mostCommonPeakTime(entries),
+                    InsightGenerator.mostCommonPeakTime(cols));
+        }
+
+        if (!nans) {
+            List<Integer> sleep = new ArrayList<>(n), score = new ArrayList<>(n);
+            for (EnergyEntry e : entries) {
+                sleep.add(e.getSleepHours());
+                score.add((int) e.getEnergyScore());
+            }
+            close(label + " correlation", StatisticsUtil.correlation(sleep, score),
+                    InsightGenerator.sleepEnergyCorrelation(cols));
+        }
+
+        // raw kernels on sub-ranges that start and end mid-chunk
+        for (int k = 0; k < 5; k++) {
+            int from = r.nextInt(n / 2), to = from + r.nextInt(n - from + 1);
+            String range = label + " [" + from + ", " + to + ")";
+            double[] scores = cols.scoreArray();
+            same(range + " argMax", sequentialArg(scores, from, to, true), ParallelStats.argMax(scores, from, to));
+            same(range + " argMin", sequentialArg(scores, from, to, false), ParallelStats.argMin(scores, from, to));
+            int[] caffeine = cols.caffeineArray();
+            int threshold = r.nextInt(6);
+            long count = 0, sum = 0;
+            for (int i = from; i < to; i++) {
+                if (caffeine[i] >= threshold) count++;
+                sum += caffeine[i];
+            }
+            same(range + " countAtLeast " + threshold, count, ParallelStats.countAtLeast(caffeine, from, to, threshold));
+            same(range + " sum", sum, ParallelStats.sum(caffeine, from, to));
+            int[] codes = cols.peakTimeArray();
+            int[] expected = new int[cols.peakTimeCount()];
+            for (int i = from; i < to; i++) expected[codes[i]]++;
+            same(range + " histogram", Arrays.toString(expected),
+                    Arrays.toString(ParallelStats.histogram(codes, from, to, cols.peakTimeCount())));
+            if (!nans && to - from >= 2) {
+                int[] sleep = cols.sleepArray(), mood = cols.moodArray();
+                close(range + " correlation(sleep, mood)", sequentialCorrelation(sleep, mood, from, to),
+                        ParallelStats.moments(sleep, mood, from, to).correlation());
+            }
+        }
+    }
+
+    // One entry per day. Scores come from a handful of integers so maxima and
+    // minima repeat; with `nans` some are NaN, one of them sometimes first.
+    private static List<EnergyEntry> history(Random r, int n, boolean nans, boolean nanFirst) {
+        List<EnergyEntry> out = new ArrayList<>(n);
+        LocalDate day = LocalDate.of(1900, 1, 1);
+        for (int i = 0; i < n; i++) {
+            double score = 10 + r.nextInt(8);
+            if (nans && (r.nextInt(100) == 0 || (nanFirst && i == 0))) score = Double.NaN;
+            out.add(EnergyEntry.of(day.plusDays(i), r.nextInt(12), 1 + r.nextInt(5), 1 + r.nextInt(5),
+                    r.nextInt(6), "Study", PEAKS[r.nextInt(PEAKS.length)], score));
+        }
+        return out;
+    }
+
+    // the loop ParallelStats.argMax documents: first extreme, NaN only when first
+    private static int sequentialArg(double[] a, int from, int to, boolean max) {
+        if (to <= from) return -1;
+        int best = from;
+        for (int i = from; i < to; i++) {
+            if (max ? a[i] > a[best] : a[i] < a[best]) best = i;
+        }
+        return best;
+    }
+
+    private static double sequentialCorrelation(int[] x, int[] y, int from, int to) {
+        List<Integer> xs = new ArrayList<>(), ys = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            xs.add(x[i]);
+            ys.add(y[i]);
+        }
+        return StatisticsUtil.correlation(xs, ys);
+    }
+
+    private static void same(String what, Object expected, Object actual) {
+        checks++;
+        if (!Objects.equals(expected, actual)) fail(what, expected, actual);
+    }
+
+    private static void close(String what, double expected, double actual) {
+        checks++;
+        if (!(Math.abs(expected - actual) <= EPSILON)) fail(what, expected, actual);
+    }
+
+    private static void fail(String what, Object expected, Object actual) {
+        failures++;
+        System.out.println("MISMATCH " + what + ": sequential " + expected + ", parallel " + actual);
+    }
+}
@@ -0,0 +1,91 @@
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+// Number formatting for the text reports, appending straight into a StringBuilder.
+// appendFixed(sb, v, 2) prints exactly what String.format("%.2f", v) does:
+// the shortest decimal digits of |v| rounded HALF_UP, with a '-' for any
+// negative value (including -0.0 and values that round to zero).
+public class ReportFormat {
+    // what %n prints
+    public static final String NEWLINE = System.lineSeparator();
+    private static final long[] POW10 = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    // String.format uses the default locale's symbols; fall back to it when they are not plain ASCII
+    private static final char DECIMAL_SEPARATOR;
+    private static final boolean ASCII_DIGITS;
+
+    static {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+        DECIMAL_SEPARATOR = symbols.getDecimalSeparator();
+        ASCII_DIGITS = symbols.getZeroDigit() == '0';
+    }
+
+    // `decimals` from 0 to 6, as "%.<decimals>f"
+    public static StringBuilder appendFixed(StringBuilder sb, double v, int decimals) {
+        if (Double.isNaN(v)) return sb.append("NaN");
+        boolean negative = Double.doubleToRawLongBits(v) < 0;
+        if (negative) sb.append('-');
+        if (Double.isInfinite(v)) return sb.append("Infinity");
+        if (!ASCII_DIGITS) return sb.append(String.format("%." + decimals + "f", Math.abs(v)));
+        double a = Math.abs(v);
+        // fast path: |v| is a whole number of 10^-decimals, so no rounding is needed
+        double scaled = a * POW10[decimals];
+        if (scaled < 1e15 && scaled == Math.rint(scaled)) {
+            long units = (long) scaled;
+            sb.append(units / POW10[decimals]);
+            if (decimals > 0) {
+                sb.append(DECIMAL_SEPARATOR);
+                appendPadded(sb, units % POW10[decimals], decimals);
+            }
+            return sb;
+        }
+        return appendRounded(sb, Double.toString(a), decimals);
+    }
+
+    private static void appendPadded(StringBuilder sb, long value, int width) {
+        for (long p = POW10[width - 1]; p > 1 && value < p; p /= 10) sb.append('0');
+        sb.append(value);
+    }
+
+    // Round the shortest representation `s` of a non-negative double ("123.456" or "1.23456E-5") HALF_UP.
+    private static StringBuilder appendRounded(StringBuilder sb, String s, int decimals) {
+        int e = s.indexOf('E');
+        int exponent = e < 0 ? 0 : Integer.parseInt(s.substring(e + 1));
+        String mantissa = e < 0 ? s : s.substring(0, e);
+        int dot = mantissa.indexOf('.');
+        // all significant digits, and how many of them sit before the decimal point
+        char[] digits = new char[mantissa.length() - 1];
+        mantissa.getChars(0, dot, digits, 0);
+        mantissa.getChars(dot + 1, mantissa.length(), digits, dot);
+        int intDigits = dot + exponent;
+
+        int keep = intDigits + decimals; // digits kept after rounding
+        // at most one more digit than we have, when rounding carries out of the top
+        char[] out = new char[Math.max(keep, 0) + 1];
+        int n = 0; // stays 0 when the number is far below the last kept place and rounds to zero
+        if (keep >= 0) {
+            for (int i = 0; i < keep; i++) out[n++] = i < digits.length ? digits[i] : '0';
+            if (keep < digits.length && digits[keep] >= '5') {
+                int i = n - 1;
+                while (i >= 0 && out[i] == '9') out[i--] = '0';
+                if (i >= 0) {
+                    out[i]++;
+                } else {
+                    System.arraycopy(out, 0, out, 1, n++);
+                    out[0] = '1';
+                    intDigits++;
+                }
+            }
+        }
+        // out[j] is now the digit at position j, with the point after intDigits of them
+        if (intDigits <= 0) sb.append('0');
+        else sb.append(out, 0, intDigits);
+        if (decimals > 0) {
+            sb.append(DECIMAL_SEPARATOR);
+            for (int i = 0; i < decimals; i++) {
+                int pos = intDigits + i; // negative for the leading zeros of numbers below 1
+                sb.append(pos >= 0 && pos < n ? out[pos] : '0');
+            }
+        }
+        return sb;
+    }
+}
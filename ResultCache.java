@@ -0,0 +1,100 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Bounded LRU cache of rendered reports, shared by every tracker in the process.
+// Entries are keyed by tracker, the tracker's data version, query name and
+// parameter; a tracker bumps its version on every change, so stale results are
+// never returned and simply age out.
+public class ResultCache {
+    public static final ResultCache SHARED = new ResultCache(Integer.getInteger("energy.cache.size", 4096));
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Object> map;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Key {
+        final long owner, version;
+        final String query;
+        final int param;
+
+        Key(long owner, long version, String query, int param) {
+            this.owner = owner;
+            this.version = version;
+            this.query = query;
+            this.param = param;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return owner == k.owner && version == k.version && param == k.param && query.equals(k.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, version, query, param);
+        }
+    }
+
+    public ResultCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.map = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() <= ResultCache.this.capacity) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    // Cached value for the key, or compute() it (outside the lock) and remember it.
+    @SuppressWarnings("unchecked")
+    public <T> T get(long owner, long version, String query, int param, Supplier<T> compute) {
+        Key key = new Key(owner, version, query, param);
+        Object v;
+        synchronized (map) {
+            v = map.get(key);
+        }
+        if (v != null) {
+            hits.increment();
+            return (T) v;
+        }
+        misses.increment();
+        T result = compute.get();
+        synchronized (map) {
+            map.put(key, result);
+        }
+        return result;
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public int capacity() { return capacity; }
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long evictions() { return evictions.sum(); }
+
+    @Override
+    public String toString() {
+        long h = hits(), m = misses();
+        return String.format("cache: %d/%d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+                size(), capacity, h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), evictions());
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.*;
+
+// The most recent `capacity` entries in date order, held in a ring buffer
+// with running sums, sleep/energy co-moments (Welford add/remove) and
+// monotonic deques for the score min/max. Every push is O(1) amortized.
+public class RollingWindow {
+    private final EnergyEntry[] ring;
+    private int head; // index of the oldest entry
+    private int size;
+    private long pushed; // entries pushed since the last reset; entry #n sits in ring[n % capacity]
+    private final MonotonicDeque maxScores;
+    private final MonotonicDeque minScores;
+
+    private double sumScore;
+    private long sumSleep, sumMood, sumProductivity;
+    // co-moments of (sleep, score)
+    private double meanSleep, meanScore, coMoment, m2Sleep, m2Score;
+
+    public RollingWindow(int capacity) {
+        ring = new EnergyEntry[capacity];
+        maxScores = new MonotonicDeque(capacity, true);
+        minScores = new MonotonicDeque(capacity, false);
+    }
+
+    public int capacity() { return ring.length; }
+
+    // Append a newer entry, evicting the oldest when full.
+    public void push(EnergyEntry e) {
+        if (size == ring.length) {
+            long evicted = pushed - size;
+            maxScores.expire(evicted);
+            minScores.expire(evicted);
+            remove(ring[head]);
+            ring[head] = e;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[(head + size) % ring.length] = e;
+        }
+        add(e);
+        maxScores.offer(pushed, e.getEnergyScore());
+        minScores.offer(pushed, e.getEnergyScore());
+        pushed++;
+    }
+
+    // Refill from the newest entries, oldest first.
+    public void reset(List<EnergyEntry> latest) {
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        pushed = 0;
+        maxScores.clear();
+        minScores.clear();
+        sumScore = 0;
+        sumSleep = sumMood = sumProductivity = 0;
+        meanSleep = meanScore = coMoment = m2Sleep = m2Score = 0;
+        int from = Math.max(0, latest.size() - ring.length);
+        for (int i = from; i < latest.size(); i++) push(latest.get(i));
+    }
+
+    private void add(EnergyEntry e) {
+        size++;
+        sumScore += e.getEnergyScore();
+        sumSleep += e.getSleepHours();
+        sumMood += e.getMood();
+        sumProductivity += e.getProductivity();
+        double dx = e.getSleepHours() - meanSleep;
+        double dy = e.getEnergyScore() - meanScore;
+        meanSleep += dx / size;
+        meanScore += dy / size;
+        coMoment += dx * (e.getEnergyScore() - meanScore);
+        m2Sleep += dx * (e.getSleepHours() - meanSleep);
+        m2Score += dy * (e.getEnergyScore() - meanScore);
+    }
+
+    private void remove(EnergyEntry e) {
+        size--;
+        sumScore -= e.getEnergyScore();
+        sumSleep -= e.getSleepHours();
+        sumMood -= e.getMood();
+        sumProductivity -= e.getProductivity();
+        if (size == 0) {
+            meanSleep = meanScore = coMoment = m2Sleep = m2Score = 0;
+            return;
+        }
+        double dx = e.getSleepHours() - meanSleep;
+        double dy = e.getEnergyScore() - meanScore;
+        meanSleep -= dx / size;
+        meanScore -= dy / size;
+        coMoment -= dx * (e.getEnergyScore() - meanScore);
+        m2Sleep -= dx * (e.getSleepHours() - meanSleep);
+        m2Score -= dy * (e.getEnergyScore() - meanScore);
+    }
+
+    public int size() { return size; }
+    public boolean isFull() { return size == ring.length; }
+
+    // i = 0 is the oldest entry in the window
+    public EnergyEntry get(int i) { return ring[(head + i) % ring.length]; }
+    public EnergyEntry oldest() { return size == 0 ? null : get(0); }
+
+    public double averageScore() { return size == 0 ? 0.0 : sumScore / size; }
+    public double averageSleep() { return size == 0 ? 0.0 : (double) sumSleep / size; }
+    public double averageMood() { return size == 0 ? 0.0 : (double) sumMood / size; }
+    public double averageProductivity() { return size == 0 ? 0.0 : (double) sumProductivity / size; }
+
+    // Highest / lowest score in the window; on ties the oldest entry wins.
+    public EnergyEntry maxEntry() { return size == 0 ? null : ring[(int) (maxScores.first() % ring.length)]; }
+    public EnergyEntry minEntry() { return size == 0 ? null : ring[(int) (minScores.first() % ring.length)]; }
+    public double maxScore() { return size == 0 ? Double.NaN : maxEntry().getEnergyScore(); }
+    public double minScore() { return size == 0 ? Double.NaN : minEntry().getEnergyScore(); }
+
+    // Pearson correlation of sleep against score; NaN when either side is flat
+    public double sleepScoreCorrelation() {
+        // removals leave rounding dust where the exact moment is zero
+        if (size < 2 || m2Sleep < 1e-9 || m2Score < 1e-9) return Double.NaN;
+        return coMoment / Math.sqrt(m2Sleep * m2Score);
+    }
+
+    // oldest first
+    public List<EnergyEntry> toList() {
+        List<EnergyEntry> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) out.add(get(i));
+        return out;
+    }
+
+    // Push numbers of candidate extremes, best first, with their scores.
+    // A new value knocks out every weaker one queued before it, so the front is
+    // always the window's extreme; Double.compare ordering, as Comparator.comparingDouble.
+    private static class MonotonicDeque {
+        private final long[] seq;
+        private final double[] value;
+        private final boolean max;
+        private int head, size;
+
+        MonotonicDeque(int capacity, boolean max) {
+            seq = new long[capacity];
+            value = new double[capacity];
+            this.max = max;
+        }
+
+        void offer(long n, double v) {
+            while (size > 0) {
+                int c = Double.compare(value[slot(size - 1)], v);
+                if (max ? c >= 0 : c <= 0) break; // equal values stay: the older one keeps the front
+                size--;
+            }
+            int i = slot(size++);
+            seq[i] = n;
+            value[i] = v;
+        }
+
+        // drop push #n if it is still queued; it just left the window
+        void expire(long n) {
+            if (size > 0 && seq[head] == n) {
+                head = (head + 1) % seq.length;
+                size--;
+            }
+        }
+
+        long first() { return seq[head]; }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private int slot(int i) { return (head + i) % seq.length; }
+    }
+}
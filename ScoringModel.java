@@ -0,0 +1,13 @@
+// Turns a day's sleep, mood, productivity and caffeine into its energy score.
+// The batch form scores whole EnergyColumns arrays in one pass; implementations
+// should keep it a plain loop over primitives so the JIT can vectorize it.
+public interface ScoringModel {
+    double score(int sleepHours, int mood, int productivity, int caffeine);
+
+    // Scores rows 0..out.length-1; the input arrays may be longer (spare column capacity).
+    default void score(int[] sleep, int[] mood, int[] productivity, int[] caffeine, double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = score(sleep[i], mood[i], productivity[i], caffeine[i]);
+        }
+    }
+}
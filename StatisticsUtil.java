@@ -42,12 +42,27 @@ public class StatisticsUtil {
         return "Low Productivity";
     }
 
+    // same detector as EnergyTracker.isCrashing, run over the series (oldest first)
     public static boolean crashDetected(List<Integer> energyScores) {
-        if (energyScores.size() < 4) return false;
+        return CrashDetector.replay(energyScores).isCrashing();
+    }
+
+    // Primitive variants of the above for long series; the work is split across
+    // the fork-join pool by ParallelStats.
+
+    public static double average(int[] values) {
+        return ParallelStats.mean(values, 0, values.length);
+    }
+
+    public static double correlation(int[] sleep, int[] energy) {
+        if (sleep.length != energy.length || sleep.length < 2) return 0;
+
+        return ParallelStats.moments(sleep, energy, 0, sleep.length).correlation();
+    }
 
-        int last = energyScores.get(energyScores.size() - 1);
-        double totalAvg = average(energyScores);
-        
-        return last < (totalAvg * 0.6);  // drop more than 40%
+    public static boolean crashDetected(int[] energyScores) {
+        CrashDetector d = new CrashDetector();
+        for (int s : energyScores) d.update(s);
+        return d.isCrashing();
     }
 }
@@ -0,0 +1,180 @@
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// One EnergyTracker shard per user, for serving many users at once.
+// A user's tracker lives in <dataDir>/<userId><extension> and is loaded on first use.
+// All access goes through read() / write(), which hold that shard's read-write
+// lock: readers of a user run in parallel, and users never wait on each other.
+// When the estimated size of the loaded shards passes the memory budget, the
+// least recently used shards that nobody is touching are closed and dropped.
+public class TrackerRegistry implements Closeable {
+    // rough heap cost of one entry across index, columns and aggregates
+    private static final long BYTES_PER_ENTRY = 400;
+    private static final Pattern USER_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Path dataDir;
+    private final String extension;
+    private final boolean journaled;
+    private final long memoryBudget;
+    private final ConcurrentHashMap<String, Shard> shards = new ConcurrentHashMap<>();
+
+    private static class Shard {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile EnergyTracker tracker; // null until first use
+        volatile long lastAccess;
+        boolean evicted; // guarded by the write lock
+    }
+
+    public TrackerRegistry(Path dataDir, long memoryBudgetBytes) {
+        this(dataDir, ".csv", true, memoryBudgetBytes);
+    }
+
+    // extension ".bin" stores shards in the binary snapshot format
+    public TrackerRegistry(Path dataDir, String extension, boolean journaled, long memoryBudgetBytes) {
+        this.dataDir = dataDir;
+        this.extension = extension;
+        this.journaled = journaled;
+        this.memoryBudget = memoryBudgetBytes;
+    }
+
+    public <R> R read(String userId, Function<EnergyTracker, R> fn) {
+        while (true) {
+            Shard s = shard(userId);
+            ensureLoaded(userId, s);
+            s.lock.readLock().lock();
+            try {
+                if (s.evicted) continue; // lost a race with eviction; fetch a fresh shard
+                s.lastAccess = System.nanoTime();
+                return fn.apply(s.tracker);
+            } finally {
+                s.lock.readLock().unlock();
+            }
+        }
+    }
+
+    // writes may grow a shard, so the budget is checked again afterwards
+    public <R> R write(String userId, Function<EnergyTracker, R> fn) {
+        while (true) {
+            Shard s = shard(userId);
+            ensureLoaded(userId, s);
+            R result;
+            s.lock.writeLock().lock();
+            try {
+                if (s.evicted) continue;
+                s.lastAccess = System.nanoTime();
+                result = fn.apply(s.tracker);
+            } finally {
+                s.lock.writeLock().unlock();
+            }
+            evictIdle();
+            return result;
+        }
+    }
+
+    // Like read(), for a shard that is loaded right now; null instead of loading it.
+    // Does not count as a use, so background sweeps do not keep idle shards alive.
+    public <R> R readIfLoaded(String userId, Function<EnergyTracker, R> fn) {
+        Shard s = shards.get(userId);
+        if (s == null || s.tracker == null) return null;
+        s.lock.readLock().lock();
+        try {
+            if (s.evicted || s.tracker == null) return null;
+            return fn.apply(s.tracker);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    // letters, digits, '_' and '-', 1 to 64 of them (user ids double as file names)
+    public static boolean isValidUserId(String userId) {
+        return USER_ID.matcher(userId).matches();
+    }
+
+    private Shard shard(String userId) {
+        if (!isValidUserId(userId)) {
+            throw new IllegalArgumentException("Invalid user id: " + userId);
+        }
+        return shards.computeIfAbsent(userId, id -> new Shard());
+    }
+
+    private void ensureLoaded(String userId, Shard s) {
+        if (s.tracker != null) return;
+        boolean loaded = false;
+        s.lock.writeLock().lock();
+        try {
+            if (s.tracker == null && !s.evicted) {
+                s.tracker = new EnergyTracker(dataDir.resolve(userId + extension).toString(), journaled);
+                s.lastAccess = System.nanoTime();
+                loaded = true;
+            }
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+        if (loaded) evictIdle();
+    }
+
+    // Drop least recently used shards until the loaded ones fit the memory budget.
+    // Shards in use right now are skipped.
+    public void evictIdle() {
+        long total = estimatedBytes();
+        if (total <= memoryBudget) return;
+        List<Map.Entry<String, Shard>> byAge = new ArrayList<>(shards.entrySet());
+        byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, Shard> e : byAge) {
+            if (total <= memoryBudget) break;
+            Shard s = e.getValue();
+            if (!s.lock.writeLock().tryLock()) continue;
+            try {
+                if (s.evicted || s.tracker == null) continue;
+                total -= s.tracker.size() * BYTES_PER_ENTRY;
+                s.tracker.close();
+                s.tracker = null;
+                s.evicted = true;
+                shards.remove(e.getKey(), s);
+            } finally {
+                s.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public long estimatedBytes() {
+        long total = 0;
+        for (Shard s : shards.values()) {
+            EnergyTracker t = s.tracker;
+            if (t != null) total += t.size() * BYTES_PER_ENTRY;
+        }
+        return total;
+    }
+
+    public int loadedShards() {
+        int n = 0;
+        for (Shard s : shards.values()) if (s.tracker != null) n++;
+        return n;
+    }
+
+    public Set<String> loadedUsers() {
+        return Collections.unmodifiableSet(shards.keySet());
+    }
+
+    // Flush and release every shard.
+    @Override
+    public void close() {
+        for (Map.Entry<String, Shard> e : shards.entrySet()) {
+            Shard s = e.getValue();
+            s.lock.writeLock().lock();
+            try {
+                if (s.tracker != null) s.tracker.close();
+                s.tracker = null;
+                s.evicted = true;
+                shards.remove(e.getKey(), s);
+            } finally {
+                s.lock.writeLock().unlock();
+            }
+        }
+    }
+}
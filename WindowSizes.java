@@ -0,0 +1,28 @@
+// Window lengths, in entries, behind the rolling analytics.
+public class WindowSizes {
+    public static final WindowSizes DEFAULT = new WindowSizes(3, 2, 7, 30);
+
+    public final int prediction;  // predictTomorrow, predictMood
+    public final int crash;       // isCrashing: span of CrashDetector's recent-days EWMA
+    public final int week;        // productivityTier, weeklyInsights
+    public final int correlation; // sleepEnergyCorrelation
+
+    public WindowSizes(int prediction, int crash, int week, int correlation) {
+        if (prediction < 1 || crash < 1 || week < 1 || correlation < 2) {
+            throw new IllegalArgumentException("window sizes must be positive (correlation at least 2)");
+        }
+        this.prediction = prediction;
+        this.crash = crash;
+        this.week = week;
+        this.correlation = correlation;
+    }
+
+    public int largest() {
+        return Math.max(Math.max(prediction, crash), Math.max(week, correlation));
+    }
+
+    @Override
+    public String toString() {
+        return "prediction=" + prediction + " crash=" + crash + " week=" + week + " correlation=" + correlation;
+    }
+}
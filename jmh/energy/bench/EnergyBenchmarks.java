@@ -0,0 +1,127 @@
+package energy.bench;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// JMH version of the EnergyBenchmark cases, one @Benchmark per case.
+// JMH will not take benchmark classes from the default package, where the rest
+// of the tree lives, so the cases come from EnergyBenchmark.entryCases() and
+// historyCases() by reflection, keyed by the names EnergyBenchmark prints.
+//
+// Usage: mvn -B -Pjmh verify                              all cases, with -prof gc
+//        mvn -B -Pjmh verify -Djmh.args="-p size=1000 summaryDashboard"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergyBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Entry {
+        Map<String, Callable<Object>> cases;
+
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void setUp() throws Exception {
+            cases = (Map<String, Callable<Object>>) harness().getMethod("entryCases").invoke(null);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class History {
+        @Param({"1000", "100000"})
+        int size;
+
+        Map<String, Callable<Object>> cases;
+        final List<Closeable> open = new ArrayList<>();
+        Path dir;
+
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void setUp() throws Exception {
+            dir = Files.createTempDirectory("energy-jmh");
+            cases = (Map<String, Callable<Object>>) harness()
+                    .getMethod("historyCases", Path.class, int.class, List.class)
+                    .invoke(null, dir, size, open);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            for (Closeable c : open) c.close();
+            open.clear();
+        }
+    }
+
+    private static Class<?> harness() throws ClassNotFoundException {
+        return Class.forName("EnergyBenchmark");
+    }
+
+    @Benchmark
+    public Object fromCSV(Entry s) throws Exception {
+        return s.cases.get("EnergyEntry.fromCSV").call();
+    }
+
+    @Benchmark
+    public Object toCSV(Entry s) throws Exception {
+        return s.cases.get("EnergyEntry.toCSV").call();
+    }
+
+    @Benchmark
+    public Object load(History s) throws Exception {
+        return s.cases.get("EnergyTracker.<init> (load)").call();
+    }
+
+    @Benchmark
+    public Object loadCSV(History s) throws Exception {
+        return s.cases.get("FileManager.loadCSV").call();
+    }
+
+    @Benchmark
+    public Object summaryDashboardCached(History s) throws Exception {
+        return s.cases.get("summaryDashboard (cached)").call();
+    }
+
+    @Benchmark
+    public Object summaryDashboard(History s) throws Exception {
+        return s.cases.get("summaryDashboard").call();
+    }
+
+    @Benchmark
+    public Object sleepEnergyCorrelation(History s) throws Exception {
+        return s.cases.get("sleepEnergyCorrelation").call();
+    }
+
+    @Benchmark
+    public Object recommendDeepWorkTime(History s) throws Exception {
+        return s.cases.get("recommendDeepWorkTime").call();
+    }
+
+    @Benchmark
+    public Object addEntryRewrite(History s) throws Exception {
+        return s.cases.get("addEntry (rewrite)").call();
+    }
+
+    @Benchmark
+    public Object addEntryJournaled(History s) throws Exception {
+        return s.cases.get("addEntry (journaled)").call();
+    }
+
+    @Benchmark
+    public Object addEntryAsync(History s) throws Exception {
+        return s.cases.get("addEntry (async)").call();
+    }
+
+    @Benchmark
+    public Object addAllBackfilled(History s) throws Exception {
+        return s.cases.get("addAll (1000 back-filled)").call();
+    }
+}